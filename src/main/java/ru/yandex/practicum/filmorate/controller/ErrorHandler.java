@@ -2,11 +2,14 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.HandlerMethodValidationException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.exception.WrongArgumentException;
 
 import java.util.Map;
@@ -22,6 +25,20 @@ public class ErrorHandler {
         return Map.of("Ошибка", message);
     }
 
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleNotValidParameter(HandlerMethodValidationException e) {
+        log.error("Во время выполнении команды пользователя произошла ошибка, т.к. параметры запроса не прошли проверку");
+        return Map.of("Ошибка", "Параметры запроса заданы неправильно");
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleValidationException(ValidationException e) {
+        log.error("Во время выполнении команды пользователя произошла ошибка, т.к. данные не прошли проверку");
+        return Map.of("Ошибка", e.getMessage());
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public Map<String, String> handleNotFoundException(NotFoundException e) {
@@ -29,6 +46,13 @@ public class ErrorHandler {
         return Map.of("Ошибка", e.getMessage());
     }
 
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public Map<String, String> handleNoConnection(CannotGetJdbcConnectionException e) {
+        log.error("Не удалось получить соединение с БД: {}", e.getMostSpecificCause().getMessage());
+        return Map.of("Ошибка", "Сервер перегружен, повторите запрос позже");
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public Map<String, String> handleThrowable(Throwable e) {
@@ -1,32 +1,75 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Positive;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.FieldSet;
 import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.LikeCount;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
 
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("/films")
 public class FilmController {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final FilmService service;
+    private final RecommendationService recommendations;
+    private final JsonStreamWriter jsonStreamWriter;
 
     @Autowired
-    public FilmController(FilmService service) {
+    public FilmController(FilmService service, RecommendationService recommendations,
+                          JsonStreamWriter jsonStreamWriter) {
         this.service = service;
+        this.recommendations = recommendations;
+        this.jsonStreamWriter = jsonStreamWriter;
     }
 
     @GetMapping
-    public Collection<Film> findAll() {
-        return service.findAll();
+    public Collection<Film> findAll(@RequestParam(required = false) Long after,
+                                    @RequestParam(required = false) @Positive @Max(MAX_PAGE_SIZE) Integer limit,
+                                    @RequestParam(required = false) String fields) {
+        FieldSet fieldSet = FieldSet.parse(fields, Film.FIELDS);
+        if (after == null && limit == null) {
+            return service.findAll(fieldSet);
+        }
+        return service.findPage(after == null ? 0 : after, limit == null ? DEFAULT_PAGE_SIZE : limit, fieldSet);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody export() {
+        return out -> jsonStreamWriter.writeArray(out, service::streamAll);
     }
 
+    /**
+     * На запрос с If-None-Match сначала сверяется только версия фильма, и при совпадении
+     * фильм целиком не загружается.
+     */
     @GetMapping("/{id}")
-    public Film findById(@Positive @PathVariable long id) {
-        return service.find(id);
+    public ResponseEntity<Film> findById(@Positive @PathVariable long id, @RequestParam(required = false) String fields,
+                                         WebRequest request) {
+        FieldSet fieldSet = FieldSet.parse(fields, Film.FIELDS);
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            String etag = service.findETag(id);
+            if (etag != null && request.checkNotModified(etag)) {
+                return null;
+            }
+        }
+        Film film = service.find(id, fieldSet);
+        String etag = service.getETag(film);
+        return etag == null ? ResponseEntity.ok(film) : ResponseEntity.ok().eTag(etag).body(film);
     }
 
     @PostMapping
@@ -34,6 +77,11 @@ public class FilmController {
         return service.add(film);
     }
 
+    @PostMapping("/batch")
+    public List<Long> addAll(@RequestBody List<Film> films) {
+        return service.addAll(films);
+    }
+
     @PutMapping
     public Film update(@Valid @RequestBody Film film) {
         return service.update(film);
@@ -49,8 +97,38 @@ public class FilmController {
         return service.removeLike(id, userId);
     }
 
+    @PutMapping(value = "/{id}/like/{userId}", params = "lean=true")
+    public LikeCount addLike(@Positive @PathVariable long id, @Positive @PathVariable long userId) {
+        return service.addLike(id, userId);
+    }
+
+    @DeleteMapping(value = "/{id}/like/{userId}", params = "lean=true")
+    public LikeCount deleteLike(@Positive @PathVariable long id, @Positive @PathVariable long userId) {
+        return service.deleteLike(id, userId);
+    }
+
+    @GetMapping("/{id}/likes")
+    public List<Long> findLikes(@Positive @PathVariable long id, @RequestParam(defaultValue = "0") long after,
+                                @RequestParam(required = false) @Positive @Max(MAX_PAGE_SIZE) Integer limit) {
+        return service.findLikes(id, after, limit == null ? DEFAULT_PAGE_SIZE : limit);
+    }
+
+    @GetMapping("/{id}/similar")
+    public Collection<Film> findSimilar(@Positive @PathVariable long id,
+                                        @RequestParam(defaultValue = "10") @Positive int count) {
+        return recommendations.findSimilar(id, count);
+    }
+
+    @GetMapping("/search")
+    public Collection<Film> search(@RequestParam String q, @RequestParam(defaultValue = "10") @Positive int count) {
+        return service.search(q, count);
+    }
+
     @GetMapping("/popular")
-    public Collection<Film> findPopular(@RequestParam(defaultValue = "10") final Integer count) {
-        return service.findPopular(count);
+    public Collection<Film> findPopular(@RequestParam(defaultValue = "10") final Integer count,
+                                        @RequestParam(required = false) @Positive Long genreId,
+                                        @RequestParam(required = false) Integer year,
+                                        @RequestParam(required = false) String fields) {
+        return service.findPopular(count, genreId, year, FieldSet.parse(fields, Film.FIELDS));
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.constraints.Positive;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -22,12 +23,12 @@ public class GenreController {
     }
 
     @GetMapping
-    public Collection<Genre> findAll() {
-        return service.findAll();
+    public ResponseEntity<Collection<Genre>> findAll() {
+        return ResponseEntity.ok().eTag(service.getETag()).body(service.findAll());
     }
 
     @GetMapping("/{id}")
-    public Genre findById(@PathVariable @Positive long id) {
-        return service.findById(id);
+    public ResponseEntity<Genre> findById(@PathVariable @Positive long id) {
+        return ResponseEntity.ok().eTag(service.getETag()).body(service.findById(id));
     }
 }
@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+import ru.yandex.practicum.filmorate.model.FieldSet;
+
+/**
+ * Применяет к ответам контроллеров параметры fields (сериализуются только перечисленные поля
+ * фильмов и пользователей) и compact=true (без наборов likes и friends).
+ */
+@RestControllerAdvice("ru.yandex.practicum.filmorate.controller")
+public class JsonFilterAdvice extends AbstractMappingJacksonResponseBodyAdvice {
+    private static final String FIELDS_PARAM = "fields";
+    private static final String COMPACT_PARAM = "compact";
+
+    @Override
+    protected void beforeBodyWriteInternal(MappingJacksonValue bodyContainer, MediaType contentType,
+                                           MethodParameter returnType, ServerHttpRequest request,
+                                           ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest servletRequest)) {
+            return;
+        }
+        HttpServletRequest httpRequest = servletRequest.getServletRequest();
+        FieldSet fields = FieldSet.parse(httpRequest.getParameter(FIELDS_PARAM));
+        boolean compact = Boolean.parseBoolean(httpRequest.getParameter(COMPACT_PARAM));
+        if (!fields.isAll() || compact) {
+            bodyContainer.setFilters(JsonFilterConfiguration.filters(fields, compact));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.PropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.model.FieldSet;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.user.User;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Фильтры полей Film и User для ObjectMapper приложения. Фильтры подключаются через mix-in, поэтому
+ * модели можно сериализовать и обычным ObjectMapper. По умолчанию сериализуются все поля, параметр
+ * fields оставляет только перечисленные, компактный режим убирает наборы likes и friends,
+ * оставляя счетчики likeCount и friendCount.
+ */
+@Configuration
+public class JsonFilterConfiguration {
+    static final String FILM_FILTER = "film";
+    static final String USER_FILTER = "user";
+
+    static final FilterProvider FULL = new SimpleFilterProvider()
+            .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll());
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer jsonFilters() {
+        return builder -> builder.filters(FULL)
+                .mixIn(Film.class, FilmFilter.class)
+                .mixIn(User.class, UserFilter.class);
+    }
+
+    /**
+     * Фильтры для запрошенных полей; в компактном режиме из них дополнительно убираются likes и friends.
+     */
+    static FilterProvider filters(FieldSet fields, boolean compact) {
+        return new SimpleFilterProvider()
+                .addFilter(FILM_FILTER, filter(fields, compact ? "likes" : null))
+                .addFilter(USER_FILTER, filter(fields, compact ? "friends" : null))
+                .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll());
+    }
+
+    private static PropertyFilter filter(FieldSet fields, String excluded) {
+        if (fields.isAll()) {
+            return excluded == null ? SimpleBeanPropertyFilter.serializeAll() : SimpleBeanPropertyFilter.serializeAllExcept(excluded);
+        }
+        Set<String> names = new HashSet<>(fields.names());
+        names.remove(excluded);
+        return SimpleBeanPropertyFilter.filterOutAllExcept(names);
+    }
+
+    @JsonFilter(FILM_FILTER)
+    private interface FilmFilter {
+    }
+
+    @JsonFilter(USER_FILTER)
+    private interface UserFilter {
+    }
+}
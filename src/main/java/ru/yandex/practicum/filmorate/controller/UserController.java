@@ -1,32 +1,68 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Positive;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.FieldSet;
+import ru.yandex.practicum.filmorate.model.film.Film;
 import ru.yandex.practicum.filmorate.model.user.User;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("/users")
 public class UserController {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final UserService service;
+    private final RecommendationService recommendations;
+    private final JsonStreamWriter jsonStreamWriter;
 
     @Autowired
-    public UserController(UserService service) {
+    public UserController(UserService service, RecommendationService recommendations,
+                          JsonStreamWriter jsonStreamWriter) {
         this.service = service;
+        this.recommendations = recommendations;
+        this.jsonStreamWriter = jsonStreamWriter;
     }
 
     @GetMapping
-    public Collection<User> findAll() {
-        return service.findAll();
+    public Collection<User> findAll(@RequestParam(required = false) Long after,
+                                    @RequestParam(required = false) @Positive @Max(MAX_PAGE_SIZE) Integer limit,
+                                    @RequestParam(required = false) String fields) {
+        FieldSet fieldSet = FieldSet.parse(fields, User.FIELDS);
+        if (after == null && limit == null) {
+            return service.findAll(fieldSet);
+        }
+        return service.findPage(after == null ? 0 : after, limit == null ? DEFAULT_PAGE_SIZE : limit, fieldSet);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody export() {
+        return out -> jsonStreamWriter.writeArray(out, service::streamAll);
     }
 
     @GetMapping("/{id}")
-    public User findById(@PathVariable @Positive long id) {
-        return service.findById(id);
+    public ResponseEntity<User> findById(@PathVariable @Positive long id, @RequestParam(required = false) String fields,
+                                         WebRequest request) {
+        FieldSet fieldSet = FieldSet.parse(fields, User.FIELDS);
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null && request.checkNotModified(service.findETag(id))) {
+            return null;
+        }
+        User user = service.findById(id, fieldSet);
+        return ResponseEntity.ok().eTag(service.getETag(user)).body(user);
     }
 
     @PostMapping
@@ -34,6 +70,11 @@ public class UserController {
         return service.add(user);
     }
 
+    @PostMapping("/batch")
+    public List<Long> addAll(@RequestBody List<User> users) {
+        return service.addAll(users);
+    }
+
     @PutMapping
     public User update(@Valid @RequestBody User user) {
         return service.update(user);
@@ -49,13 +90,37 @@ public class UserController {
         return service.deleteFriend(id, friendId);
     }
 
+    @PutMapping(value = "/{id}/friends/{friendId}", params = "lean=true")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void addFriendship(@PathVariable @Positive long id, @PathVariable @Positive long friendId) {
+        service.addFriendship(id, friendId);
+    }
+
+    @DeleteMapping(value = "/{id}/friends/{friendId}", params = "lean=true")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void deleteFriendship(@PathVariable @Positive long id, @PathVariable @Positive long friendId) {
+        service.deleteFriendship(id, friendId);
+    }
+
     @GetMapping("{id}/friends")
-    public Collection<User> findFriends(@PathVariable @Positive long id) {
-        return service.findFriends(id);
+    public Collection<User> findFriends(@PathVariable @Positive long id, @RequestParam(required = false) String fields) {
+        return service.findFriends(id, FieldSet.parse(fields, User.FIELDS));
+    }
+
+    @GetMapping("/{id}/friends/ids")
+    public List<Long> findFriendIds(@PathVariable @Positive long id, @RequestParam(defaultValue = "0") long after,
+                                    @RequestParam(required = false) @Positive @Max(MAX_PAGE_SIZE) Integer limit) {
+        return service.findFriendIds(id, after, limit == null ? DEFAULT_PAGE_SIZE : limit);
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
     public Collection<User> findMutuals(@PathVariable @Positive long id, @PathVariable @Positive long otherId) {
         return service.findMutuals(id, otherId);
     }
+
+    @GetMapping("/{id}/recommendations")
+    public Collection<Film> findRecommendations(@PathVariable @Positive long id,
+                                                @RequestParam(defaultValue = "10") @Positive int count) {
+        return recommendations.findRecommendations(id, count);
+    }
 }
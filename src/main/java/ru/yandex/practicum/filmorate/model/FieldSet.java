@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.model;
+
+import ru.yandex.practicum.filmorate.exception.WrongArgumentException;
+
+import java.util.*;
+
+/**
+ * Поля модели, запрошенные параметром fields. Хранилище выбирает только колонки этих полей
+ * и не читает таблицы незапрошенных связей. Пустой параметр означает все поля.
+ */
+public final class FieldSet {
+    public static final FieldSet ALL = new FieldSet(null);
+
+    private final Set<String> names;
+
+    private FieldSet(Set<String> names) {
+        this.names = names;
+    }
+
+    /**
+     * Разбирает список полей через запятую без проверки имен.
+     */
+    public static FieldSet parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (String name : fields.split(",")) {
+            if (!name.isBlank()) {
+                names.add(name.trim());
+            }
+        }
+        return names.isEmpty() ? ALL : new FieldSet(Collections.unmodifiableSet(names));
+    }
+
+    public static FieldSet parse(String fields, Set<String> allowed) {
+        FieldSet result = parse(fields);
+        if (!result.isAll()) {
+            List<String> unknown = result.names.stream().filter(name -> !allowed.contains(name)).toList();
+            if (!unknown.isEmpty()) {
+                throw new WrongArgumentException("Неизвестные поля: " + String.join(", ", unknown));
+            }
+        }
+        return result;
+    }
+
+    public boolean isAll() {
+        return names == null;
+    }
+
+    public boolean includes(String field) {
+        return names == null || names.contains(field);
+    }
+
+    /**
+     * Набор с дополнительными полями, которые нужны для обработки запроса, но могли быть не запрошены.
+     */
+    public FieldSet with(String... fields) {
+        if (names == null) {
+            return this;
+        }
+        Set<String> extended = new LinkedHashSet<>(names);
+        extended.addAll(List.of(fields));
+        return new FieldSet(Collections.unmodifiableSet(extended));
+    }
+
+    public Set<String> names() {
+        return names;
+    }
+
+    @Override
+    public String toString() {
+        return names == null ? "*" : String.join(",", names);
+    }
+}
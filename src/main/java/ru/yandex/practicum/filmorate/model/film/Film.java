@@ -1,14 +1,21 @@
 package ru.yandex.practicum.filmorate.model.film;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.*;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import ru.yandex.practicum.filmorate.util.CompactLongSet;
 
 import java.time.LocalDate;
 import java.util.*;
 
 @Data
 public class Film {
+    public static final Set<String> FIELDS = Set.of("id", "name", "description", "releaseDate", "duration", "mpa",
+            "likes", "likeCount", "genres");
+
     private long id;
 
     @NotNull
@@ -26,9 +33,23 @@ public class Film {
 
     private Rating mpa;
 
-    private Set<Long> likes = new HashSet<>();
+    private Set<Long> likes = new CompactLongSet();
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @EqualsAndHashCode.Exclude
+    private long likeCount;
 
-    private Set<Genre> genres = new TreeSet<>();
+    /**
+     * null, если поле genres не пришло в запросе: обновление тогда оставляет жанры фильма как есть.
+     */
+    private Set<Genre> genres;
+
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private long version;
+
+    protected Film() {
+    }
 
     @Builder
     public Film(long id, int duration, LocalDate releaseDate, String description, String name, Rating mpa) {
@@ -38,6 +59,11 @@ public class Film {
         this.description = description;
         this.name = name;
         this.mpa = mpa;
+        this.genres = new TreeSet<>();
+    }
+
+    public void setLikes(Set<Long> likes) {
+        this.likes = CompactLongSet.of(likes);
     }
 
     public Map<String, Object> toMap() {
@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.model.film;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class LikeCount {
+    private long filmId;
+    private long likeCount;
+}
@@ -1,15 +1,18 @@
 package ru.yandex.practicum.filmorate.model.user;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.PastOrPresent;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import ru.yandex.practicum.filmorate.util.CompactLongSet;
 
 import java.time.LocalDate;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -18,6 +21,9 @@ import java.util.Set;
  */
 @Data
 public class User {
+    public static final Set<String> FIELDS = Set.of("id", "email", "login", "name", "birthday", "friends",
+            "friendCount");
+
     private long id;
 
     @NotNull
@@ -33,7 +39,15 @@ public class User {
     @PastOrPresent
     private LocalDate birthday;
 
-    private Set<Long> friends = new HashSet<>();
+    private Set<Long> friends = new CompactLongSet();
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @EqualsAndHashCode.Exclude
+    private long friendCount;
+
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private long version;
 
     @Builder
     public User(long id, LocalDate birthday, String name, String login, String email) {
@@ -44,6 +58,10 @@ public class User {
         this.email = email;
     }
 
+    public void setFriends(Set<Long> friends) {
+        this.friends = CompactLongSet.of(friends);
+    }
+
     public Map<String, Object> toMap() {
         Map<String, Object> values = new HashMap<>();
         values.put("email", email);
@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Считает выполненные SQL-запросы (пакет - один запрос), прочитанные и измененные строки
+ * всего и в рамках QueryStats текущего потока.
+ */
+public class QueryCountingDataSource extends DelegatingDataSource {
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+
+    public QueryCountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    public long getQueries() {
+        return queries.get();
+    }
+
+    public long getRows() {
+        return rows.get();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return countingConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return countingConnection(super.getConnection(username, password));
+    }
+
+    private Connection countingConnection(Connection connection) {
+        return proxy(Connection.class, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            return result instanceof Statement statement ? countingStatement(statement, method.getReturnType()) : result;
+        });
+    }
+
+    private Statement countingStatement(Statement statement, Class<?> type) {
+        return (Statement) proxy(type, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                addQuery();
+            }
+            Object result = invoke(statement, method, args);
+            if (result instanceof ResultSet resultSet) {
+                return countingResultSet(resultSet);
+            }
+            if (name.startsWith("execute")) {
+                addRows(updatedRows(result));
+            }
+            return result;
+        });
+    }
+
+    private ResultSet countingResultSet(ResultSet resultSet) {
+        return proxy(ResultSet.class, (proxy, method, args) -> {
+            Object result = invoke(resultSet, method, args);
+            if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+                addRows(1);
+            }
+            return result;
+        });
+    }
+
+    private static long updatedRows(Object result) {
+        long count = 0;
+        if (result instanceof Integer updated) {
+            count = updated;
+        } else if (result instanceof Long updated) {
+            count = updated;
+        } else if (result instanceof int[] batch) {
+            for (int updated : batch) {
+                count += Math.max(updated, 0);
+            }
+        } else if (result instanceof long[] batch) {
+            for (long updated : batch) {
+                count += Math.max(updated, 0);
+            }
+        }
+        return Math.max(count, 0);
+    }
+
+    private void addQuery() {
+        queries.incrementAndGet();
+        QueryStats stats = QueryStats.current();
+        if (stats != null) {
+            stats.addQuery();
+        }
+    }
+
+    private void addRows(long count) {
+        if (count == 0) {
+            return;
+        }
+        rows.addAndGet(count);
+        QueryStats stats = QueryStats.current();
+        if (stats != null) {
+            stats.addRows(count);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Считает SQL-запросы и строки, обработанные за один HTTP-запрос, и записывает их в метрики
+ * filmorate.http.queries и filmorate.http.rows. Если запросов больше порога, пишет предупреждение
+ * и увеличивает счетчик filmorate.http.queries.exceeded. В режиме отладки добавляет
+ * заголовки X-Query-Count и X-Row-Count: они ставятся перед началом записи тела, поэтому тело
+ * не буферизуется, а у потоковых ответов заголовки показывают запросы, сделанные до первого байта.
+ */
+@Component
+@Slf4j
+public class QueryCountingFilter extends OncePerRequestFilter {
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+    public static final String ROW_COUNT_HEADER = "X-Row-Count";
+    private static final String STATS_ATTRIBUTE = QueryCountingFilter.class.getName() + ".stats";
+
+    private final MeterRegistry registry;
+    private final long alertThreshold;
+    private final boolean debugHeaders;
+
+    @Autowired
+    public QueryCountingFilter(MeterRegistry registry,
+                               @Value("${filmorate.monitoring.query-alert-threshold:20}") long alertThreshold,
+                               @Value("${filmorate.monitoring.debug-headers:false}") boolean debugHeaders) {
+        this.registry = registry;
+        this.alertThreshold = alertThreshold;
+        this.debugHeaders = debugHeaders;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean asyncDispatch = isAsyncDispatch(request);
+        QueryStats stats = asyncDispatch ? (QueryStats) request.getAttribute(STATS_ATTRIBUTE) : QueryStats.start();
+        request.setAttribute(STATS_ATTRIBUTE, stats);
+        QueryHeadersResponse headers = debugHeaders && !asyncDispatch ? new QueryHeadersResponse(response, stats) : null;
+        HttpServletResponse target = headers != null ? headers : response;
+        try {
+            chain.doFilter(request, target);
+        } finally {
+            if (!asyncDispatch) {
+                QueryStats.stop();
+            }
+            if (!request.isAsyncStarted()) {
+                record(request, stats);
+                if (headers != null) {
+                    headers.writeHeaders();
+                }
+            }
+        }
+    }
+
+    private void record(HttpServletRequest request, QueryStats stats) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        DistributionSummary.builder("filmorate.http.queries")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(registry)
+                .record(stats.getQueries());
+        DistributionSummary.builder("filmorate.http.rows")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(registry)
+                .record(stats.getRows());
+        if (stats.getQueries() > alertThreshold) {
+            log.warn("Запрос {} {} выполнил {} SQL-запросов (порог {})",
+                    request.getMethod(), request.getRequestURI(), stats.getQueries(), alertThreshold);
+            Counter.builder("filmorate.http.queries.exceeded")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri)
+                    .register(registry)
+                    .increment();
+        }
+    }
+
+    /**
+     * Ставит заголовки со счетчиками один раз, когда ответ начинает писать тело или завершается без него.
+     */
+    private static final class QueryHeadersResponse extends HttpServletResponseWrapper {
+        private final QueryStats stats;
+        private boolean written;
+
+        QueryHeadersResponse(HttpServletResponse response, QueryStats stats) {
+            super(response);
+            this.stats = stats;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeaders();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeaders();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeaders();
+            super.flushBuffer();
+        }
+
+        void writeHeaders() {
+            if (written || isCommitted()) {
+                return;
+            }
+            written = true;
+            setHeader(QUERY_COUNT_HEADER, String.valueOf(stats.getQueries()));
+            setHeader(ROW_COUNT_HEADER, String.valueOf(stats.getRows()));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+/**
+ * Счетчики SQL-запросов и строк, накопленные в текущем потоке (обычно за один HTTP-запрос).
+ */
+public final class QueryStats {
+    private static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>();
+
+    private long queries;
+    private long rows;
+
+    public static QueryStats start() {
+        QueryStats stats = new QueryStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    static QueryStats current() {
+        return CURRENT.get();
+    }
+
+    public long getQueries() {
+        return queries;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    void addQuery() {
+        queries++;
+    }
+
+    void addRows(long count) {
+        rows += count;
+    }
+}
@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Проверка моделей из пакетных запросов, где @Valid контроллера не проверяет элементы списка.
+ */
+@Slf4j
+final class BeanValidation {
+    private BeanValidation() {
+    }
+
+    static <T> void validate(Validator validator, T bean) {
+        Set<ConstraintViolation<T>> violations = validator.validate(bean);
+        if (!violations.isEmpty()) {
+            String message = violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .collect(Collectors.joining(", "));
+            log.error("Данные не прошли проверку: {}", message);
+            throw new ValidationException(message);
+        }
+    }
+}
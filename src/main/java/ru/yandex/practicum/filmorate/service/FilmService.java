@@ -1,49 +1,187 @@
 package ru.yandex.practicum.filmorate.service;
 
+import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.FieldSet;
 import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.LikeCount;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikeWriteBuffer;
 
-import java.util.Collection;
+import java.util.*;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
 public class FilmService {
     private final FilmStorage storage;
+    private final Validator validator;
+    private final LikeWriteBuffer likeBuffer;
+    private final RecommendationService recommendations;
 
     @Autowired
-    public FilmService(@Qualifier("filmDbStorage") FilmStorage storage) {
+    public FilmService(@Qualifier("filmDbStorage") FilmStorage storage, Validator validator,
+                       ObjectProvider<LikeWriteBuffer> likeBuffer, RecommendationService recommendations) {
         this.storage = storage;
+        this.validator = validator;
+        this.likeBuffer = likeBuffer.getIfAvailable();
+        this.recommendations = recommendations;
     }
 
-    public Collection<Film> findAll() {
-        return storage.findAll();
+    public Collection<Film> findAll(FieldSet fields) {
+        return storage.findAll(fields);
+    }
+
+    public Collection<Film> findPage(long after, int limit, FieldSet fields) {
+        return storage.findPage(after, limit, fields);
+    }
+
+    public void streamAll(Consumer<Film> consumer) {
+        storage.streamAll(consumer);
     }
 
     public Film find(long id) {
-        return storage.findById(id);
+        return find(id, FieldSet.ALL);
+    }
+
+    public Film find(long id, FieldSet fields) {
+        Film film = storage.findById(id, fields);
+        return likeBuffer == null ? film : likeBuffer.apply(film);
+    }
+
+    /**
+     * ETag фильма по одной версии из БД, без загрузки лайков и жанров. null, если у фильма есть
+     * незаписанные лайки: версия в БД их еще не учитывает.
+     */
+    public String findETag(long id) {
+        if (likeBuffer != null && likeBuffer.hasPending(id)) {
+            return null;
+        }
+        return Long.toString(storage.findVersion(id));
+    }
+
+    public String getETag(Film film) {
+        if (likeBuffer != null && likeBuffer.hasPending(film.getId())) {
+            return null;
+        }
+        return Long.toString(film.getVersion());
     }
 
     public Film add(Film film) {
         return storage.add(film);
     }
 
+    public List<Long> addAll(List<Film> films) {
+        films.forEach(film -> BeanValidation.validate(validator, film));
+        return storage.addAll(films);
+    }
+
     public Film update(Film film) {
         return storage.update(film);
     }
 
     public Film like(long id, long userId) {
-        return storage.like(id, userId);
+        if (likeBuffer == null) {
+            return recommendations.like(id, userId, () -> storage.like(id, userId));
+        }
+        recommendations.like(id, userId, () -> likeBuffer.like(id, userId));
+        return find(id);
     }
 
     public Film removeLike(long id, long userId) {
-        return storage.removeLike(id, userId);
+        if (likeBuffer == null) {
+            return recommendations.unlike(id, userId, () -> storage.removeLike(id, userId));
+        }
+        recommendations.unlike(id, userId, () -> likeBuffer.unlike(id, userId));
+        return find(id);
+    }
+
+    public LikeCount addLike(long id, long userId) {
+        long likeCount = recommendations.like(id, userId,
+                () -> likeBuffer == null ? storage.addLike(id, userId) : likeBuffer.like(id, userId));
+        return LikeCount.builder().filmId(id).likeCount(likeCount).build();
+    }
+
+    public LikeCount deleteLike(long id, long userId) {
+        long likeCount = recommendations.unlike(id, userId,
+                () -> likeBuffer == null ? storage.deleteLike(id, userId) : likeBuffer.unlike(id, userId));
+        return LikeCount.builder().filmId(id).likeCount(likeCount).build();
+    }
+
+    /**
+     * Незаписанные снятия лайков могут убрать из страницы до стольких же id, поэтому из БД берется
+     * на столько же больше. Незаписанные лайки добавляются, только если попадают в диапазон id,
+     * полностью покрытый выборкой из БД.
+     */
+    public List<Long> findLikes(long id, long after, int limit) {
+        Map<Long, Boolean> pending = likeBuffer == null ? Map.of() : likeBuffer.findPending(id);
+        if (pending.isEmpty()) {
+            return storage.findLikes(id, after, limit);
+        }
+        int removed = (int) pending.values().stream().filter(liked -> !liked).count();
+        List<Long> stored = storage.findLikes(id, after, limit + removed);
+        long last = stored.size() < limit + removed ? Long.MAX_VALUE : stored.getLast();
+        NavigableSet<Long> page = new TreeSet<>(stored);
+        pending.forEach((userId, liked) -> {
+            if (!liked) {
+                page.remove(userId);
+            } else if (userId > after && userId <= last) {
+                page.add(userId);
+            }
+        });
+        return page.stream().limit(limit).toList();
+    }
+
+    public Collection<Film> search(String query, int count) {
+        Collection<Film> films = storage.search(query, count);
+        return likeBuffer == null ? films : films.stream().map(likeBuffer::apply).toList();
     }
 
     public Collection<Film> findPopular(long count) {
-        return storage.findPopular(count);
+        return findPopular(count, FieldSet.ALL);
+    }
+
+    public Collection<Film> findPopular(long count, FieldSet fields) {
+        return findPopular(count, null, null, fields);
+    }
+
+    public Collection<Film> findPopular(long count, Long genreId, Integer year, FieldSet fields) {
+        if (likeBuffer == null || likeBuffer.size() == 0) {
+            return storage.findPopular(count, genreId, year, fields);
+        }
+        return findPopularWithPending(count, genreId, year, likeBuffer.pendingDeltas(), fields.with("likeCount"));
+    }
+
+    /**
+     * Фильмы, потерявшие незаписанные лайки, могут выпасть из топа, поэтому из БД берется на столько же
+     * больше кандидатов; фильмы с незаписанными лайками добавляются к кандидатам по id, если входят в сегмент.
+     */
+    private Collection<Film> findPopularWithPending(long count, Long genreId, Integer year, Map<Long, Long> deltas,
+                                                    FieldSet fields) {
+        long falling = deltas.values().stream().filter(delta -> delta < 0).count();
+        Map<Long, Film> candidates = new LinkedHashMap<>();
+        storage.findPopular(count + falling, genreId, year, fields).forEach(film -> candidates.put(film.getId(), film));
+        List<Long> rising = deltas.entrySet().stream()
+                .filter(entry -> entry.getValue() > 0 && !candidates.containsKey(entry.getKey()))
+                .map(Map.Entry::getKey)
+                .toList();
+        storage.findByIds(rising).stream()
+                .filter(film -> inSegment(film, genreId, year))
+                .forEach(film -> candidates.put(film.getId(), film));
+        return candidates.values().stream()
+                .map(likeBuffer::apply)
+                .sorted(Comparator.comparingLong(Film::getLikeCount).reversed()
+                        .thenComparingLong(Film::getId))
+                .limit(count)
+                .toList();
+    }
+
+    private boolean inSegment(Film film, Long genreId, Integer year) {
+        return (genreId == null || film.getGenres().stream().anyMatch(genre -> genreId.equals(genre.getId())))
+                && (year == null || film.getReleaseDate() != null && year == film.getReleaseDate().getYear());
     }
 }
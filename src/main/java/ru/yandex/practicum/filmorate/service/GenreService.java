@@ -3,24 +3,28 @@ package ru.yandex.practicum.filmorate.service;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.model.film.Genre;
-import ru.yandex.practicum.filmorate.storage.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
 
 import java.util.Collection;
 
 @Service
 public class GenreService {
-    private final GenreDbStorage storage;
+    private final ReferenceDataCache referenceData;
 
     @Autowired
-    public GenreService(GenreDbStorage storage) {
-        this.storage = storage;
+    public GenreService(ReferenceDataCache referenceData) {
+        this.referenceData = referenceData;
+    }
+
+    public String getETag() {
+        return referenceData.getETag();
     }
 
     public Collection<Genre> findAll() {
-        return storage.findAll();
+        return referenceData.findAllGenres();
     }
 
     public Genre findById(long id) {
-        return storage.findById(id);
+        return referenceData.findGenre(id);
     }
 }
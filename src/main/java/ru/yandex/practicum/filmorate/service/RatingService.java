@@ -3,25 +3,29 @@ package ru.yandex.practicum.filmorate.service;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.model.film.Rating;
-import ru.yandex.practicum.filmorate.storage.RatingDbStorage;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
 
 import java.util.Collection;
 
 @Service
 public class RatingService {
-    private final RatingDbStorage storage;
+    private final ReferenceDataCache referenceData;
 
     @Autowired
-    public RatingService(RatingDbStorage storage) {
-        this.storage = storage;
+    public RatingService(ReferenceDataCache referenceData) {
+        this.referenceData = referenceData;
+    }
+
+    public String getETag() {
+        return referenceData.getETag();
     }
 
     public Collection<Rating> findAll() {
-        return storage.findAll();
+        return referenceData.findAllRatings();
     }
 
     public Rating findById(long id) {
-        return storage.findById(id);
+        return referenceData.findRating(id);
     }
 
 }
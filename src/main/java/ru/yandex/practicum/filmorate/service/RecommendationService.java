@@ -0,0 +1,407 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.util.CompactLongSet;
+import ru.yandex.practicum.filmorate.util.LongIntHashMap;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Рекомендации фильмов по матрице совместных лайков: для каждого фильма хранится, сколько
+ * пользователей лайкнули его вместе с каждым другим фильмом. Сходство фильмов - косинусная мера
+ * co(f, g) / sqrt(n(f) * n(g)), где n - число лайков фильма. Матрица обновляется при каждом лайке
+ * и снятии лайка и полностью пересобирается из хранилища при старте. Пользователи, лайкнувшие больше
+ * max-likes-per-user фильмов, в матрицу не входят: их пары растут квадратично и почти не несут сигнала.
+ */
+@Service
+@Slf4j
+public class RecommendationService {
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final int maxLikesPerUser;
+
+    private static final int PAIR_LOCKS = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock[] pairLocks = new Lock[PAIR_LOCKS];
+    private volatile Queue<Change> pending;
+    private volatile Index index = new Index(new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+
+    @Autowired
+    public RecommendationService(@Qualifier("filmDbStorage") FilmStorage filmStorage,
+                                 @Qualifier("userDbStorage") UserStorage userStorage,
+                                 @Value("${filmorate.recommendations.max-likes-per-user:500}") int maxLikesPerUser) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.maxLikesPerUser = maxLikesPerUser;
+        for (int i = 0; i < PAIR_LOCKS; i++) {
+            pairLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildInBackground() {
+        Thread.ofVirtual().name("recommendations-rebuild").start(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.error("Не удалось собрать матрицу рекомендаций", e);
+            }
+        });
+    }
+
+    /**
+     * Пересобирает матрицу из хранилища; строки матрицы считаются параллельно в ForkJoinPool.
+     * Сборка идет без блокировки: старая матрица продолжает отвечать и принимать лайки, а лайки,
+     * пришедшие во время сборки, пишутся в журнал и повторяются на новой матрице перед подменой.
+     * Повтор идемпотентен, поэтому лайк, который уже попал в выгрузку, не учитывается дважды.
+     */
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        Queue<Change> journal = new ConcurrentLinkedQueue<>();
+        // После захвата блокировки записи все лайки, не попавшие в журнал, уже записаны в хранилище
+        lock.writeLock().lock();
+        try {
+            pending = journal;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Index built;
+        try {
+            built = build();
+        } catch (RuntimeException e) {
+            pending = null;
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            int replayed = 0;
+            for (Change change = journal.poll(); change != null; change = journal.poll(), replayed++) {
+                if (change.liked()) {
+                    addLike(built, change.filmId(), change.userId());
+                } else {
+                    removeLike(built, change.filmId(), change.userId());
+                }
+            }
+            index = built;
+            pending = null;
+            log.info("Матрица рекомендаций собрана: {} фильмов, {} пользователей за {} мс, повторено {} изменений",
+                    built.usersByFilm().size(), built.filmsByUser().size(), System.currentTimeMillis() - start, replayed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Выполняет запись лайка и обновляет матрицу под блокировкой пары фильм-пользователь, чтобы
+     * конкурентные лайк и снятие лайка одной пары попадали в матрицу в том же порядке, что и в хранилище.
+     */
+    public <T> T like(long filmId, long userId, Supplier<T> write) {
+        Lock pairLock = pairLock(filmId, userId);
+        pairLock.lock();
+        try {
+            T result = write.get();
+            onLike(filmId, userId);
+            return result;
+        } finally {
+            pairLock.unlock();
+        }
+    }
+
+    public <T> T unlike(long filmId, long userId, Supplier<T> write) {
+        Lock pairLock = pairLock(filmId, userId);
+        pairLock.lock();
+        try {
+            T result = write.get();
+            onUnlike(filmId, userId);
+            return result;
+        } finally {
+            pairLock.unlock();
+        }
+    }
+
+    public void onLike(long filmId, long userId) {
+        lock.readLock().lock();
+        try {
+            addLike(index, filmId, userId);
+            Queue<Change> journal = pending;
+            if (journal != null) {
+                journal.add(new Change(filmId, userId, true));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void onUnlike(long filmId, long userId) {
+        lock.readLock().lock();
+        try {
+            removeLike(index, filmId, userId);
+            Queue<Change> journal = pending;
+            if (journal != null) {
+                journal.add(new Change(filmId, userId, false));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Collection<Film> findSimilar(long filmId, int count) {
+        if (!filmStorage.exists(filmId)) {
+            log.info("Фильм с id {} не найден", filmId);
+            throw new NotFoundException("Фильм с id " + filmId + " не найден");
+        }
+        long start = System.nanoTime();
+        List<Long> ids = findSimilarIds(filmId, count);
+        log.info("Выполняется возврат {} фильмов, похожих на фильм с id {}, подбор занял {} мкс",
+                ids.size(), filmId, (System.nanoTime() - start) / 1000);
+        return findFilms(ids);
+    }
+
+    public Collection<Film> findRecommendations(long userId, int count) {
+        if (!userStorage.exists(userId)) {
+            log.info("Пользователь с id {} не найден", userId);
+            throw new NotFoundException("Пользователь с id " + userId + " не найден");
+        }
+        long start = System.nanoTime();
+        List<Long> ids = findRecommendedIds(userId, count);
+        log.info("Выполняется возврат {} рекомендованных фильмов пользователю с id {}, подбор занял {} мкс",
+                ids.size(), userId, (System.nanoTime() - start) / 1000);
+        return findFilms(ids);
+    }
+
+    List<Long> findSimilarIds(long filmId, int count) {
+        lock.readLock().lock();
+        try {
+            Index current = index;
+            Scores scores = new Scores();
+            current.forEachSimilar(filmId, (otherId, similarity) -> scores.add(otherId, similarity));
+            return scores.top(count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Сумма сходства непросмотренных фильмов со всеми фильмами, которые лайкнул пользователь.
+     */
+    List<Long> findRecommendedIds(long userId, int count) {
+        lock.readLock().lock();
+        try {
+            Index current = index;
+            CompactLongSet liked = current.filmsByUser().get(userId);
+            if (liked == null) {
+                return List.of();
+            }
+            Scores scores = new Scores();
+            for (long filmId : liked.toLongArray()) {
+                current.forEachSimilar(filmId, (otherId, similarity) -> {
+                    if (!liked.contains(otherId)) {
+                        scores.add(otherId, similarity);
+                    }
+                });
+            }
+            return scores.top(count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Index build() {
+        Map<Long, CompactLongSet> usersByFilm = new ConcurrentHashMap<>();
+        Map<Long, CompactLongSet> filmsByUser = new ConcurrentHashMap<>();
+        filmStorage.streamAll(film -> {
+            if (film.getLikes().isEmpty()) {
+                return;
+            }
+            usersByFilm.put(film.getId(), new CompactLongSet(film.getLikes()));
+            for (Long userId : film.getLikes()) {
+                filmsByUser.computeIfAbsent(userId, id -> new CompactLongSet()).add(film.getId());
+            }
+        });
+
+        Map<Long, LongIntHashMap> cooccurrence = new ConcurrentHashMap<>();
+        usersByFilm.entrySet().parallelStream().forEach(entry -> {
+            long filmId = entry.getKey();
+            LongIntHashMap row = new LongIntHashMap();
+            for (long userId : entry.getValue().toLongArray()) {
+                CompactLongSet films = filmsByUser.get(userId);
+                if (films.size() > maxLikesPerUser) {
+                    continue;
+                }
+                for (long otherId : films.toLongArray()) {
+                    if (otherId != filmId) {
+                        row.addTo(otherId, 1);
+                    }
+                }
+            }
+            if (!row.isEmpty()) {
+                cooccurrence.put(filmId, row);
+            }
+        });
+        return new Index(usersByFilm, filmsByUser, cooccurrence);
+    }
+
+    private void addLike(Index current, long filmId, long userId) {
+        CompactLongSet films = current.filmsByUser().computeIfAbsent(userId, id -> new CompactLongSet());
+        synchronized (films) {
+            if (!films.add(filmId)) {
+                return;
+            }
+            current.usersByFilm().computeIfAbsent(filmId, id -> new CompactLongSet()).add(userId);
+            if (films.size() <= maxLikesPerUser) {
+                for (long otherId : films.toLongArray()) {
+                    if (otherId != filmId) {
+                        current.addPair(filmId, otherId, 1);
+                    }
+                }
+            } else if (films.size() == maxLikesPerUser + 1) {
+                films.remove(filmId);
+                current.addAllPairs(films.toLongArray(), -1);
+                films.add(filmId);
+            }
+        }
+    }
+
+    private void removeLike(Index current, long filmId, long userId) {
+        CompactLongSet films = current.filmsByUser().get(userId);
+        if (films == null) {
+            return;
+        }
+        synchronized (films) {
+            int before = films.size();
+            if (!films.remove(filmId)) {
+                return;
+            }
+            CompactLongSet users = current.usersByFilm().get(filmId);
+            if (users != null) {
+                users.remove(userId);
+            }
+            if (before <= maxLikesPerUser) {
+                for (long otherId : films.toLongArray()) {
+                    current.addPair(filmId, otherId, -1);
+                }
+            } else if (before == maxLikesPerUser + 1) {
+                current.addAllPairs(films.toLongArray(), 1);
+            }
+        }
+    }
+
+    private Lock pairLock(long filmId, long userId) {
+        return pairLocks[Math.floorMod(Long.hashCode(filmId * 31 + userId), PAIR_LOCKS)];
+    }
+
+    private Collection<Film> findFilms(List<Long> ids) {
+        Map<Long, Film> films = new HashMap<>();
+        filmStorage.findByIds(ids).forEach(film -> films.put(film.getId(), film));
+        return ids.stream().map(films::get).filter(Objects::nonNull).toList();
+    }
+
+    private record Index(Map<Long, CompactLongSet> usersByFilm, Map<Long, CompactLongSet> filmsByUser,
+                         Map<Long, LongIntHashMap> cooccurrence) {
+        void addPair(long filmId, long otherId, int delta) {
+            addToRow(filmId, otherId, delta);
+            addToRow(otherId, filmId, delta);
+        }
+
+        void addAllPairs(long[] films, int delta) {
+            for (int i = 0; i < films.length; i++) {
+                for (int j = i + 1; j < films.length; j++) {
+                    addPair(films[i], films[j], delta);
+                }
+            }
+        }
+
+        void forEachSimilar(long filmId, SimilarityConsumer consumer) {
+            LongIntHashMap row = cooccurrence.get(filmId);
+            if (row == null) {
+                return;
+            }
+            double likes = Math.max(1, likes(filmId));
+            synchronized (row) {
+                row.forEach((otherId, together) ->
+                        consumer.accept(otherId, together / Math.sqrt(likes * Math.max(1, likes(otherId)))));
+            }
+        }
+
+        private void addToRow(long filmId, long otherId, int delta) {
+            LongIntHashMap row = cooccurrence.computeIfAbsent(filmId, id -> new LongIntHashMap());
+            synchronized (row) {
+                row.addTo(otherId, delta);
+            }
+        }
+
+        private int likes(long filmId) {
+            CompactLongSet users = usersByFilm.get(filmId);
+            return users == null ? 0 : users.size();
+        }
+    }
+
+    private record Change(long filmId, long userId, boolean liked) {
+    }
+
+    @FunctionalInterface
+    private interface SimilarityConsumer {
+        void accept(long filmId, double similarity);
+    }
+
+    /**
+     * Накопитель оценок фильмов: id в LongIntHashMap указывает на ячейку в массивах оценок.
+     */
+    private static class Scores {
+        private final LongIntHashMap slots = new LongIntHashMap();
+        private long[] ids = new long[16];
+        private double[] values = new double[16];
+
+        void add(long filmId, double score) {
+            int slot = slots.get(filmId, -1);
+            if (slot < 0) {
+                slot = slots.size();
+                if (slot == ids.length) {
+                    ids = Arrays.copyOf(ids, slot * 2);
+                    values = Arrays.copyOf(values, slot * 2);
+                }
+                slots.put(filmId, slot);
+                ids[slot] = filmId;
+            }
+            values[slot] += score;
+        }
+
+        /**
+         * count лучших по убыванию оценки, при равенстве - по возрастанию id.
+         */
+        List<Long> top(int count) {
+            Comparator<Integer> order = Comparator.<Integer>comparingDouble(slot -> values[slot])
+                    .thenComparing(slot -> ids[slot], Comparator.reverseOrder());
+            PriorityQueue<Integer> heap = new PriorityQueue<>(order);
+            for (int slot = 0; slot < slots.size(); slot++) {
+                heap.offer(slot);
+                if (heap.size() > count) {
+                    heap.poll();
+                }
+            }
+            Long[] result = new Long[heap.size()];
+            for (int i = result.length - 1; i >= 0; i--) {
+                result[i] = ids[heap.poll()];
+            }
+            return List.of(result);
+        }
+    }
+}
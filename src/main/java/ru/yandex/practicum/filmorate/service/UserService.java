@@ -1,36 +1,70 @@
 package ru.yandex.practicum.filmorate.service;
 
+import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.FieldSet;
 import ru.yandex.practicum.filmorate.model.user.User;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
 public class UserService {
     private final UserStorage storage;
+    private final Validator validator;
 
     @Autowired
-    public UserService(@Qualifier("userDbStorage") UserStorage storage) {
+    public UserService(@Qualifier("userDbStorage") UserStorage storage, Validator validator) {
         this.storage = storage;
+        this.validator = validator;
     }
 
-    public Collection<User> findAll() {
-        return storage.findAll();
+    public Collection<User> findAll(FieldSet fields) {
+        return storage.findAll(fields);
+    }
+
+    public Collection<User> findPage(long after, int limit, FieldSet fields) {
+        return storage.findPage(after, limit, fields);
+    }
+
+    public void streamAll(Consumer<User> consumer) {
+        storage.streamAll(consumer);
     }
 
     public User findById(long id) {
         return storage.findById(id);
     }
 
+    public User findById(long id, FieldSet fields) {
+        return storage.findById(id, fields);
+    }
+
+    /**
+     * ETag пользователя по одной версии из БД, без загрузки друзей.
+     */
+    public String findETag(long id) {
+        return Long.toString(storage.findVersion(id));
+    }
+
+    public String getETag(User user) {
+        return Long.toString(user.getVersion());
+    }
+
     public User add(User user) {
         return storage.add(user);
     }
 
+    public List<Long> addAll(List<User> users) {
+        users.forEach(user -> BeanValidation.validate(validator, user));
+        return storage.addAll(users);
+    }
+
     public User update(User user) {
         return storage.update(user);
     }
@@ -43,11 +77,23 @@ public class UserService {
         return storage.deleteFriend(id, friendId);
     }
 
-    public Collection<User> findFriends(long id) {
-        return storage.findFriends(id);
+    public void addFriendship(long id, long friendId) {
+        storage.addFriendship(id, friendId);
+    }
+
+    public void deleteFriendship(long id, long friendId) {
+        storage.deleteFriendship(id, friendId);
+    }
+
+    public List<Long> findFriendIds(long id, long after, int limit) {
+        return storage.findFriendIds(id, after, limit);
+    }
+
+    public Collection<User> findFriends(long id, FieldSet fields) {
+        return storage.findFriends(id, fields);
     }
 
     public Collection<User> findMutuals(long id, long otherId) {
         return storage.findMutuals(id, otherId);
     }
-}
\ No newline at end of file
+}
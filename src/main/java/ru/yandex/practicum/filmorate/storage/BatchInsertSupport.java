@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class BatchInsertSupport {
+    private BatchInsertSupport() {
+    }
+
+    public static <T> List<Long> insertAndReturnKeys(JdbcTemplate jdbc, String sql, String keyColumn, List<T> items,
+                                                     ParameterizedPreparedStatementSetter<T> setter) {
+        return jdbc.execute((ConnectionCallback<List<Long>>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(sql, new String[]{keyColumn})) {
+                for (T item : items) {
+                    setter.setValues(ps, item);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                List<Long> keys = new ArrayList<>(items.size());
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    while (rs.next()) {
+                        keys.add(rs.getLong(1));
+                    }
+                }
+                return keys;
+            }
+        });
+    }
+}
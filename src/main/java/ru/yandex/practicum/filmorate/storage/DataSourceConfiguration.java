@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(value = "filmorate.jdbc.limiter.enabled", havingValue = "true", matchIfMissing = true)
+public class DataSourceConfiguration {
+    /**
+     * Оборачивает пул раньше остальных постпроцессоров, чтобы подсчет запросов шел поверх ограничителя.
+     */
+    @Bean
+    static LimitingPostProcessor concurrencyLimitingDataSourcePostProcessor(
+            @Value("${filmorate.jdbc.limiter.max-connections:${spring.datasource.hikari.maximum-pool-size:10}}")
+            int maxConnections,
+            @Value("${filmorate.jdbc.limiter.acquire-timeout:30s}") Duration acquireTimeout) {
+        return new LimitingPostProcessor(maxConnections, acquireTimeout);
+    }
+
+    @Bean
+    MeterBinder concurrencyLimiterMetrics(DataSource dataSource) throws SQLException {
+        ConcurrencyLimitingDataSource limiter = dataSource.unwrap(ConcurrencyLimitingDataSource.class);
+        return registry -> {
+            Gauge.builder("filmorate.jdbc.limiter.active", limiter, ConcurrencyLimitingDataSource::getActiveConnections)
+                    .register(registry);
+            Gauge.builder("filmorate.jdbc.limiter.waiting", limiter, ConcurrencyLimitingDataSource::getWaitingThreads)
+                    .register(registry);
+        };
+    }
+
+    record LimitingPostProcessor(int maxConnections, Duration acquireTimeout)
+            implements BeanPostProcessor, Ordered {
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof DataSource dataSource && !(bean instanceof ConcurrencyLimitingDataSource)) {
+                return new ConcurrencyLimitingDataSource(dataSource, maxConnections, acquireTimeout);
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.film.Genre;
+import ru.yandex.practicum.filmorate.model.film.Rating;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Заполняет БД синтетическими пользователями, фильмами, лайками и друзьями.
+ * Число лайков и друзей у пользователя и популярность фильмов и пользователей
+ * распределены по степенному закону; при одинаковом seed данные совпадают.
+ * Запуск: java -jar filmorate.jar --spring.profiles.active=seed --filmorate.seed.users=...
+ */
+@Component
+@Profile("seed")
+@Slf4j
+public class DatasetGenerator implements ApplicationRunner {
+    private static final int BATCH_SIZE = 10_000;
+    private static final int MAX_GENRES_PER_FILM = 3;
+    private static final LocalDate FIRST_RELEASE = LocalDate.of(1950, 1, 1);
+    private static final LocalDate FIRST_BIRTHDAY = LocalDate.of(1950, 1, 1);
+
+    private static final String ADD_USER_QUERY = "INSERT INTO users (birthday, name, login, email) VALUES (?, ?, ?, ?)";
+    private static final String ADD_FILM_QUERY = "INSERT INTO film (duration, release_date, description, name, rating_id) "
+            + "VALUES (?, ?, ?, ?, ?)";
+    private static final String ADD_GENRE_QUERY = "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)";
+    private static final String ADD_LIKE_QUERY = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
+    private static final String ADD_FRIEND_QUERY = "INSERT INTO friend (user_id, second_user_id) VALUES (?, ?)";
+    private static final String MAX_USER_ID_QUERY = "SELECT COALESCE(MAX(user_id), 0) FROM users";
+    private static final String MAX_FILM_ID_QUERY = "SELECT COALESCE(MAX(film_id), 0) FROM film";
+    private static final String FIND_USER_IDS_QUERY = "SELECT user_id FROM users WHERE user_id > ? ORDER BY user_id";
+    private static final String FIND_FILM_IDS_QUERY = "SELECT film_id FROM film WHERE film_id > ? ORDER BY film_id";
+    private static final String RECOUNT_LIKES_QUERY = "MERGE INTO film f "
+            + "USING (SELECT film_id, COUNT(*) AS likes FROM likes GROUP BY film_id) l ON f.film_id = l.film_id "
+            + "WHEN MATCHED THEN UPDATE SET like_count = l.likes, version = version + 1";
+    private static final String SYNC_GENRE_SEGMENTS_QUERY = "MERGE INTO film_genre fg "
+            + "USING film f ON fg.film_id = f.film_id "
+            + "WHEN MATCHED THEN UPDATE SET release_year = f.release_year, like_count = f.like_count";
+    private static final String RECOUNT_FRIENDS_QUERY = "MERGE INTO users u "
+            + "USING (SELECT user_id, COUNT(*) AS friends FROM friend GROUP BY user_id) f ON u.user_id = f.user_id "
+            + "WHEN MATCHED THEN UPDATE SET friend_count = f.friends, version = version + 1";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final ReferenceDataCache referenceData;
+
+    @Value("${filmorate.seed.seed:42}")
+    private long seed;
+    @Value("${filmorate.seed.users:100000}")
+    private int userCount;
+    @Value("${filmorate.seed.films:20000}")
+    private int filmCount;
+    @Value("${filmorate.seed.max-likes-per-user:200}")
+    private int maxLikesPerUser;
+    @Value("${filmorate.seed.max-friends-per-user:200}")
+    private int maxFriendsPerUser;
+    @Value("${filmorate.seed.exponent:1.2}")
+    private double exponent;
+
+    @Autowired
+    public DatasetGenerator(JdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+                            ReferenceDataCache referenceData) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.referenceData = referenceData;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.currentTimeMillis();
+        Random random = new Random(seed);
+        log.info("Генерация данных: seed {}, {} пользователей, {} фильмов", seed, userCount, filmCount);
+
+        long[] userIds = addUsers(random);
+        log.info("Добавлено {} пользователей", userIds.length);
+        long[] filmIds = addFilms(random);
+        log.info("Добавлено {} фильмов", filmIds.length);
+        long likes = addLikes(random, userIds, filmIds);
+        log.info("Добавлено {} лайков", likes);
+        long friends = addFriends(random, userIds);
+        log.info("Добавлено {} заявок в друзья", friends);
+        jdbc.update(RECOUNT_LIKES_QUERY);
+        jdbc.update(SYNC_GENRE_SEGMENTS_QUERY);
+        jdbc.update(RECOUNT_FRIENDS_QUERY);
+
+        log.info("Сгенерировано {} пользователей, {} фильмов, {} лайков, {} друзей за {} мс",
+                userIds.length, filmIds.length, likes, friends, System.currentTimeMillis() - start);
+    }
+
+    private long[] addUsers(Random random) {
+        long after = jdbc.queryForObject(MAX_USER_ID_QUERY, Long.class);
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < userCount; i++) {
+            String login = "user" + (after + i + 1);
+            rows.add(new Object[]{Date.valueOf(FIRST_BIRTHDAY.plusDays(random.nextInt(20_000))),
+                    "Пользователь " + (after + i + 1), login, login + "@mail.ru"});
+            flushIfFull(ADD_USER_QUERY, rows);
+        }
+        flush(ADD_USER_QUERY, rows);
+        return jdbc.queryForList(FIND_USER_IDS_QUERY, Long.class, after).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private long[] addFilms(Random random) {
+        long after = jdbc.queryForObject(MAX_FILM_ID_QUERY, Long.class);
+        List<Rating> ratings = List.copyOf(referenceData.findAllRatings());
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < filmCount; i++) {
+            Rating rating = ratings.get(powerLaw(random, ratings.size()) - 1);
+            rows.add(new Object[]{60 + random.nextInt(120), Date.valueOf(FIRST_RELEASE.plusDays(random.nextInt(27_000))),
+                    "Описание фильма " + (after + i + 1), "Фильм " + (after + i + 1), rating.getId()});
+            flushIfFull(ADD_FILM_QUERY, rows);
+        }
+        flush(ADD_FILM_QUERY, rows);
+        long[] filmIds = jdbc.queryForList(FIND_FILM_IDS_QUERY, Long.class, after).stream()
+                .mapToLong(Long::longValue).toArray();
+
+        List<Genre> genres = List.copyOf(referenceData.findAllGenres());
+        Set<Long> filmGenres = new HashSet<>();
+        for (long filmId : filmIds) {
+            filmGenres.clear();
+            int count = 1 + random.nextInt(Math.min(MAX_GENRES_PER_FILM, genres.size()));
+            while (filmGenres.size() < count) {
+                filmGenres.add(genres.get(powerLaw(random, genres.size()) - 1).getId());
+            }
+            filmGenres.forEach(genreId -> rows.add(new Object[]{filmId, genreId}));
+            flushIfFull(ADD_GENRE_QUERY, rows);
+        }
+        flush(ADD_GENRE_QUERY, rows);
+        return filmIds;
+    }
+
+    private long addLikes(Random random, long[] userIds, long[] filmIds) {
+        long[] byPopularity = shuffled(random, filmIds);
+        return addEdges(random, ADD_LIKE_QUERY, userIds, byPopularity, Math.min(maxLikesPerUser, filmIds.length), true);
+    }
+
+    private long addFriends(Random random, long[] userIds) {
+        long[] byPopularity = shuffled(random, userIds);
+        return addEdges(random, ADD_FRIEND_QUERY, userIds, byPopularity,
+                Math.min(maxFriendsPerUser, userIds.length - 1), false);
+    }
+
+    /**
+     * Для каждого пользователя выбирает степень связности и затем столько же различных целей,
+     * где цель с меньшим номером в targets выбирается чаще.
+     */
+    private long addEdges(Random random, String sql, long[] userIds, long[] targets, int maxDegree, boolean targetFirst) {
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        Set<Long> picked = new HashSet<>();
+        long total = 0;
+        for (long userId : userIds) {
+            int degree = maxDegree > 0 ? powerLaw(random, maxDegree) : 0;
+            picked.clear();
+            while (picked.size() < degree) {
+                long target = targets[powerLaw(random, targets.length) - 1];
+                if (target != userId || targetFirst) {
+                    picked.add(target);
+                }
+            }
+            for (long target : picked) {
+                rows.add(targetFirst ? new Object[]{target, userId} : new Object[]{userId, target});
+            }
+            total += degree;
+            flushIfFull(sql, rows);
+        }
+        flush(sql, rows);
+        return total;
+    }
+
+    /**
+     * Случайное число от 1 до max с вероятностью, убывающей как k^-exponent.
+     */
+    private int powerLaw(Random random, int max) {
+        double u = random.nextDouble();
+        double value;
+        if (Math.abs(exponent - 1) < 1e-9) {
+            value = Math.pow(max + 1, u);
+        } else {
+            double power = 1 - exponent;
+            value = Math.pow((Math.pow(max + 1, power) - 1) * u + 1, 1 / power);
+        }
+        return (int) Math.min(max, Math.max(1, (long) value));
+    }
+
+    private static long[] shuffled(Random random, long[] ids) {
+        long[] copy = ids.clone();
+        for (int i = copy.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long tmp = copy[i];
+            copy[i] = copy[j];
+            copy[j] = tmp;
+        }
+        return copy;
+    }
+
+    private void flushIfFull(String sql, List<Object[]> rows) {
+        if (rows.size() >= BATCH_SIZE) {
+            flush(sql, rows);
+        }
+    }
+
+    private void flush(String sql, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> jdbc.batchUpdate(sql, rows));
+            rows.clear();
+        }
+    }
+}
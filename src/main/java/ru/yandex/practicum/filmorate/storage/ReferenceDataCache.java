@@ -0,0 +1,135 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.film.Genre;
+import ru.yandex.practicum.filmorate.model.film.Rating;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Жанры и MPA-рейтинги, загруженные из БД при старте приложения и перечитываемые раз в refresh-interval.
+ * Поиск по id выполняется по массиву без обращения к БД. ETag справочников - время загрузки,
+ * которая изменила данные, поэтому перечитывание без изменений не сбрасывает кэши клиентов.
+ */
+@Component
+@Slf4j
+public class ReferenceDataCache {
+    private final GenreDbStorage genreStorage;
+    private final RatingDbStorage ratingStorage;
+
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("reference-data-refresh").daemon().factory());
+
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public ReferenceDataCache(GenreDbStorage genreStorage, RatingDbStorage ratingStorage,
+                              @Value("${filmorate.reference-data.refresh-interval:5m}") Duration refreshInterval) {
+        this.genreStorage = genreStorage;
+        this.ratingStorage = ratingStorage;
+        if (refreshInterval.isPositive()) {
+            refresher.scheduleWithFixedDelay(this::scheduledReload, refreshInterval.toMillis(), refreshInterval.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PostConstruct
+    public synchronized void reload() {
+        List<Genre> genres = List.copyOf(genreStorage.findAll());
+        List<Rating> ratings = List.copyOf(ratingStorage.findAll());
+        Snapshot current = snapshot;
+        if (current != null && current.genres().equals(genres.stream().sorted().toList())
+                && current.ratings().equals(ratings.stream().sorted(Comparator.comparingLong(Rating::getId)).toList())) {
+            return;
+        }
+
+        Genre[] genresById = new Genre[(int) genres.stream().mapToLong(Genre::getId).max().orElse(0) + 1];
+        genres.forEach(genre -> genresById[(int) genre.getId()] = genre);
+        Rating[] ratingsById = new Rating[(int) ratings.stream().mapToLong(Rating::getId).max().orElse(0) + 1];
+        ratings.forEach(rating -> ratingsById[(int) rating.getId()] = rating);
+
+        snapshot = new Snapshot(genresById, ratingsById,
+                genres.stream().sorted().toList(),
+                ratings.stream().sorted(Comparator.comparingLong(Rating::getId)).toList(),
+                Long.toString(current == null ? System.currentTimeMillis()
+                        : Math.max(System.currentTimeMillis(), Long.parseLong(current.etag()) + 1)));
+        log.info("Справочники загружены: {} жанров, {} рейтингов", genres.size(), ratings.size());
+    }
+
+    @PreDestroy
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    public String getETag() {
+        return snapshot.etag();
+    }
+
+    public Collection<Genre> findAllGenres() {
+        return snapshot.genres();
+    }
+
+    public Collection<Rating> findAllRatings() {
+        return snapshot.ratings();
+    }
+
+    public boolean hasGenre(long id) {
+        return getGenre(id) != null;
+    }
+
+    public boolean hasRating(long id) {
+        return getRating(id) != null;
+    }
+
+    public Genre findGenre(long id) {
+        Genre genre = getGenre(id);
+        if (genre == null) {
+            log.info("Жанра с id {} еще нет", id);
+            throw new NotFoundException("Жанра с таким id еще нет");
+        }
+        return genre;
+    }
+
+    public Rating findRating(long id) {
+        Rating rating = getRating(id);
+        if (rating == null) {
+            log.info("Рейтинга с id {} еще нет", id);
+            throw new NotFoundException("Рейтинга с таким id еще нет");
+        }
+        return rating;
+    }
+
+    public Genre getGenre(long id) {
+        Genre[] genres = snapshot.genresById();
+        return id >= 0 && id < genres.length ? genres[(int) id] : null;
+    }
+
+    public Rating getRating(long id) {
+        Rating[] ratings = snapshot.ratingsById();
+        return id >= 0 && id < ratings.length ? ratings[(int) id] : null;
+    }
+
+    private void scheduledReload() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            log.error("Не удалось перечитать справочники: {}", e.getMessage());
+        }
+    }
+
+    private record Snapshot(Genre[] genresById, Rating[] ratingsById, List<Genre> genres, List<Rating> ratings,
+                            String etag) {
+    }
+}
@@ -2,175 +2,523 @@ package ru.yandex.practicum.filmorate.storage.film;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.exception.InternalErrorException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.WrongArgumentException;
+import ru.yandex.practicum.filmorate.model.FieldSet;
 import ru.yandex.practicum.filmorate.model.film.Film;
 import ru.yandex.practicum.filmorate.model.film.Genre;
-import ru.yandex.practicum.filmorate.model.film.Like;
-import ru.yandex.practicum.filmorate.service.GenreService;
-import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.BatchInsertSupport;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
 import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
-import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
-import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Repository("filmDbStorage")
 @Slf4j
 public class FilmDbStorage implements FilmStorage {
     private final JdbcTemplate jdbc;
-    private final UserService userService;
-    private final GenreService genreService;
+    private final ReferenceDataCache referenceData;
     private final FilmRowMapper filmRowMapper;
-    private final RatingRowMapper ratingRowMapper;
-    private final GenreRowMapper genreRowMapper;
+    private final NamedParameterJdbcTemplate namedJdbc;
+    private final SimpleJdbcInsert filmInsert;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate streamTransaction;
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex();
+
+    private static final int BATCH_SIZE = 1000;
+    private static final String FIND_ALL_QUERY = "SELECT %s FROM film f";
+    private static final String FIND_BY_ID_QUERY = FIND_ALL_QUERY + " WHERE f.film_id = ?";
+    private static final String FIND_BY_IDS_QUERY = FIND_ALL_QUERY + " WHERE f.film_id IN (:ids)";
+    private static final String FIND_ALL_ORDERED_QUERY = FIND_ALL_QUERY + " ORDER BY f.film_id";
+    private static final String EXISTS_QUERY = "SELECT EXISTS (SELECT 1 FROM film WHERE film_id = ?)";
+    private static final String FIND_VERSION_QUERY = "SELECT version FROM film WHERE film_id = ?";
+    private static final String COUNT_BY_IDS_QUERY = "SELECT COUNT(*) FROM film WHERE film_id IN (:ids)";
+    private static final String FIND_PAGE_QUERY = FIND_ALL_QUERY + " WHERE f.film_id > ? ORDER BY f.film_id LIMIT ?";
+    private static final String ADD_QUERY = "INSERT INTO film (duration, name, description, release_date, rating_id) VALUES (?, ?, ?, ?, ?)";
+    private static final String UPDATE_QUERY = "SELECT version FROM FINAL TABLE (UPDATE film SET duration = ?, release_date = ?, description = ?, name = ?, rating_id = ?, version = version + 1 WHERE film_id = ?)";
+    private static final String FIND_ALL_TEXTS_QUERY = "SELECT film_id, version, name, description FROM film ORDER BY film_id";
+    private static final String FIND_GENRE_IDS_QUERY = "SELECT genre_id FROM film_genre WHERE film_id = ?";
+    private static final String ADD_GENRE_QUERY = "INSERT INTO film_genre (film_id, genre_id, release_year, like_count) "
+            + "SELECT film_id, ?, release_year, like_count FROM film WHERE film_id = ?";
+    private static final String SYNC_GENRE_YEAR_QUERY = "UPDATE film_genre SET release_year = "
+            + "(SELECT release_year FROM film WHERE film_id = ?) WHERE film_id = ?";
+    private static final String SYNC_GENRE_LIKE_COUNT_QUERY = "UPDATE film_genre SET like_count = ? WHERE film_id = ?";
+    private static final String DELETE_GENRE_QUERY = "DELETE FROM film_genre WHERE film_id = ? AND genre_id = ?";
+    private static final String FIND_POPULAR_QUERY = FIND_ALL_QUERY + " ORDER BY f.like_count DESC, f.film_id LIMIT ?";
+    private static final String FIND_POPULAR_BY_YEAR_QUERY = FIND_ALL_QUERY
+            + " WHERE f.release_year = ? ORDER BY f.like_count DESC, f.film_id LIMIT ?";
+    private static final String FIND_POPULAR_BY_GENRE_QUERY = "SELECT %s FROM film_genre fg JOIN film f ON f.film_id = fg.film_id"
+            + " WHERE fg.genre_id = ? ORDER BY fg.like_count DESC, fg.film_id LIMIT ?";
+    private static final String FIND_POPULAR_BY_GENRE_AND_YEAR_QUERY = "SELECT %s FROM film_genre fg JOIN film f ON f.film_id = fg.film_id"
+            + " WHERE fg.genre_id = ? AND fg.release_year = ? ORDER BY fg.like_count DESC, fg.film_id LIMIT ?";
+    private static final String ADD_LIKE_QUERY = "INSERT INTO likes (film_id, user_id) SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)";
+    private static final String DELETE_LIKE_QUERY = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
+    private static final String CHANGE_LIKE_COUNT_QUERY = "SELECT like_count FROM FINAL TABLE (UPDATE film SET like_count = like_count + ?, version = version + 1 WHERE film_id = ?)";
+    private static final String FIND_LIKE_COUNT_QUERY = "SELECT like_count FROM film WHERE film_id = ?";
+    private static final String LIKE_TARGETS_EXIST_QUERY = "SELECT EXISTS (SELECT 1 FROM film WHERE film_id = ?), EXISTS (SELECT 1 FROM users WHERE user_id = ?)";
+    private static final String FIND_LIKES_PAGE_QUERY = "SELECT user_id FROM likes WHERE film_id = ? AND user_id > ? ORDER BY user_id LIMIT ?";
+    private static final String FIND_ALL_LIKES_QUERY = "SELECT film_id, user_id FROM likes ORDER BY film_id, user_id";
+    private static final String FIND_LIKES_BY_FILMS_QUERY = "SELECT film_id, user_id FROM likes WHERE film_id IN (:ids) "
+            + "ORDER BY film_id, user_id";
+    private static final String FIND_ALL_GENRES_QUERY = "SELECT film_id, genre_id FROM film_genre";
+    private static final String FIND_GENRES_BY_FILMS_QUERY = FIND_ALL_GENRES_QUERY + " WHERE film_id IN (:ids)";
 
     @Autowired
-    public FilmDbStorage(JdbcTemplate jdbc, UserService userService, GenreService genreService, FilmRowMapper filmRowMapper, RatingRowMapper ratingRowMapper, GenreRowMapper genreRowMapper) {
+    public FilmDbStorage(JdbcTemplate jdbc, NamedParameterJdbcTemplate namedJdbc, PlatformTransactionManager transactionManager, ReferenceDataCache referenceData, FilmRowMapper filmRowMapper) {
         this.jdbc = jdbc;
-        this.userService = userService;
-        this.genreService = genreService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.streamTransaction = new TransactionTemplate(transactionManager);
+        this.streamTransaction.setReadOnly(true);
+        this.namedJdbc = namedJdbc;
+        this.referenceData = referenceData;
         this.filmRowMapper = filmRowMapper;
-        this.ratingRowMapper = ratingRowMapper;
-        this.genreRowMapper = genreRowMapper;
+        this.filmInsert = new SimpleJdbcInsert(jdbc).withTableName("film")
+                .usingColumns("duration", "name", "description", "release_date", "rating_id")
+                .usingGeneratedKeyColumns("film_id");
     }
 
     @Override
     public Collection<Film> findAll() {
-        Collection<Film> films = jdbc.query("SELECT * FROM FILM", filmRowMapper);
-        Collection<Film> filmsWithRatingAndLikes = films.stream()
-                .peek(film -> film.setMpa(jdbc.queryForObject("SELECT * FROM RATING WHERE RATING_ID = ?",
-                        ratingRowMapper, jdbc.queryForObject("SELECT RATING_ID FROM FILM WHERE FILM_ID = ?", Long.class, film.getId()))))
-                .peek(film -> film.setLikes(new HashSet<>(jdbc.queryForList("SELECT USER_ID FROM LIKES WHERE FILM_ID = ?", Long.class, film.getId()))))
-                .toList();
-
-        Collection<Film> result = filmsWithRatingAndLikes.stream().peek(film -> film.setGenres(new HashSet<>(jdbc.query("SELECT g.* FROM GENRE g INNER JOIN FILM_GENRE fg ON g.GENRE_ID = fg.GENRE_ID WHERE fg.FILM_ID = ?",
-                genreRowMapper, film.getId())))).toList();
-        log.info("Выполняется возврат всех фильмов из БД");
-        return result;
+        return findAll(FieldSet.ALL);
+    }
+
+    @Override
+    public Collection<Film> findAll(FieldSet fields) {
+        Map<Long, Film> films = mapById(jdbc.query(FIND_ALL_QUERY.formatted(filmRowMapper.columns(fields)),
+                filmRowMapper.withFields(fields)));
+        if (fields.includes("likes")) {
+            jdbc.query(FIND_ALL_LIKES_QUERY, likesHandler(films));
+        }
+        if (fields.includes("genres")) {
+            jdbc.query(FIND_ALL_GENRES_QUERY, genresHandler(films));
+        }
+        log.info("Выполняется возврат всех фильмов из БД, поля: {}", fields);
+        return films.values();
+    }
+
+    @Override
+    public Collection<Film> findPage(long after, int limit) {
+        return findPage(after, limit, FieldSet.ALL);
+    }
+
+    @Override
+    public Collection<Film> findPage(long after, int limit, FieldSet fields) {
+        Collection<Film> films = findFilms(FIND_PAGE_QUERY, fields, after, limit);
+        log.info("Выполняется возврат {} фильмов после id {} из БД", films.size(), after);
+        return films;
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> consumer) {
+        Map<Long, Film> chunk = new LinkedHashMap<>();
+        // Курсор и запросы лайков и жанров для каждой пачки идут в одной транзакции, то есть на одном соединении
+        streamTransaction.executeWithoutResult(status -> {
+            jdbc.query(con -> {
+                PreparedStatement ps = con.prepareStatement(FIND_ALL_ORDERED_QUERY.formatted(filmRowMapper.columns(FieldSet.ALL)), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(BATCH_SIZE);
+                return ps;
+            }, (RowCallbackHandler) rs -> {
+                Film film = filmRowMapper.mapRow(rs, rs.getRow());
+                chunk.put(film.getId(), film);
+                if (chunk.size() == BATCH_SIZE) {
+                    flushChunk(chunk, consumer);
+                }
+            });
+            flushChunk(chunk, consumer);
+        });
+        log.info("Выполнена потоковая выгрузка всех фильмов из БД");
     }
 
     @Override
     public Film findById(long id) {
-        try {
-            Film film = jdbc.queryForObject("SELECT * FROM FILM WHERE FILM_ID = ?", filmRowMapper, id);
-            film.setMpa(jdbc.queryForObject("SELECT * FROM RATING WHERE RATING_ID = ?",
-                    ratingRowMapper, jdbc.queryForObject("SELECT RATING_ID FROM FILM WHERE FILM_ID = ?", Long.class, id)));
-            film.setLikes(new HashSet<>(jdbc.queryForList("SELECT USER_ID FROM LIKES WHERE FILM_ID = ?", Long.class, id)));
-            film.setGenres(new TreeSet<>(jdbc.query("SELECT g.* FROM GENRE g INNER JOIN FILM_GENRE fg ON g.GENRE_ID = fg.GENRE_ID WHERE fg.FILM_ID = ?",
-                    genreRowMapper, id)));
-
-            log.info("Выполняется возврат фильма с id {} из БД", id);
-            return film;
-        } catch (EmptyResultDataAccessException e) {
+        return findById(id, FieldSet.ALL);
+    }
+
+    @Override
+    public Film findById(long id, FieldSet fields) {
+        Collection<Film> films = findFilms(FIND_BY_ID_QUERY, fields, id);
+        if (films.isEmpty()) {
             log.error("Пользователь попытался найти несуществующий фильм");
             throw new NotFoundException("Не удалось найти фильм");
         }
+        log.info("Выполняется возврат фильма с id {} из БД", id);
+        return films.iterator().next();
     }
 
     @Override
-    public Film add(Film film) {
-        try {
-            jdbc.queryForObject("SELECT * FROM RATING WHERE RATING_ID = ?", ratingRowMapper, film.getMpa().getId());
+    public Collection<Film> findByIds(Collection<Long> ids) {
+        List<Long> distinct = List.copyOf(new LinkedHashSet<>(ids));
+        Map<Long, Film> films = new LinkedHashMap<>();
+        for (int from = 0; from < distinct.size(); from += BATCH_SIZE) {
+            MapSqlParameterSource params = new MapSqlParameterSource("ids", distinct.subList(from, Math.min(from + BATCH_SIZE, distinct.size())));
+            films.putAll(mapById(namedJdbc.query(FIND_BY_IDS_QUERY.formatted(filmRowMapper.columns(FieldSet.ALL)), params, filmRowMapper)));
+        }
+        loadRelations(films, FieldSet.ALL);
+        log.info("Выполняется возврат {} фильмов по списку id из БД", films.size());
+        return films.values();
+    }
 
-            Set<Genre> genres = film.getGenres();
-            for (Genre genre : genres) {
-                jdbc.queryForObject("SELECT * FROM GENRE WHERE GENRE.GENRE_ID = ?", genreRowMapper, genre.getId());
-            }
-        } catch (EmptyResultDataAccessException e) {
-            log.info("Рейтинга с id {} еще нет", film.getMpa().getId());
-            throw new WrongArgumentException("Рейтинга с таким id еще нет");
+    @Override
+    public long findVersion(long id) {
+        List<Long> versions = jdbc.queryForList(FIND_VERSION_QUERY, Long.class, id);
+        if (versions.isEmpty()) {
+            log.info("Фильм с id {} не найден", id);
+            throw new NotFoundException("Фильм с id " + id + " не найден");
         }
+        return versions.getFirst();
+    }
 
-        try {
-            SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbc).withTableName("film").usingGeneratedKeyColumns("film_id");
-            long id = simpleJdbcInsert.executeAndReturnKey(film.toMap()).longValue();
-
-            SimpleJdbcInsert insertGenres = new SimpleJdbcInsert(jdbc).withTableName("film_genre");
-            Set<Genre> genres = film.getGenres();
-            for (Genre genre : genres) {
-                genreService.findById(genre.getId());
-                Map<String, Object> genreMap = new HashMap<>();
-                genreMap.put("film_id", id);
-                genreMap.put("genre_id", genre.getId());
-                insertGenres.execute(genreMap);
-            }
+    @Override
+    public boolean exists(long id) {
+        return jdbc.queryForObject(EXISTS_QUERY, Boolean.class, id);
+    }
 
-            if (id != 0) {
-                log.info("Новый фильм с id {} сохранен", id);
-                return findById(id);
-            } else {
-                log.error("Произошла ошибка при попытке сохранить фильм");
-                throw new InternalErrorException("Не удалось сохранить данные");
-            }
-        } catch (EmptyResultDataAccessException e) {
-            throw new NotFoundException("Нужного элемента нет в базе данных");
+    @Override
+    public boolean existsAll(Collection<Long> ids) {
+        Set<Long> distinct = new HashSet<>(ids);
+        if (distinct.isEmpty()) {
+            return true;
         }
+        Long found = namedJdbc.queryForObject(COUNT_BY_IDS_QUERY, new MapSqlParameterSource("ids", distinct), Long.class);
+        return found != null && found == distinct.size();
     }
 
     @Override
-    public Film update(Film film) {
-        try {
-            findById(film.getId());
-            int rowsUpdated = jdbc.update("UPDATE FILM SET DURATION = ?, RELEASE_DATE = ?, DESCRIPTION = ?, NAME = ?, RATING_ID = ? WHERE FILM_ID = ?", film.getDuration(), film.getReleaseDate(), film.getDescription(), film.getName(), film.getMpa().getId(), film.getId());
-            if (rowsUpdated == 0) {
-                throw new InternalErrorException("Не удалось обновить данные");
-            }
+    @Transactional
+    public Film add(Film film) {
+        validateReferences(film);
+        long id = filmInsert.executeAndReturnKey(film.toMap()).longValue();
+        if (id == 0) {
+            log.error("Произошла ошибка при попытке сохранить фильм");
+            throw new InternalErrorException("Не удалось сохранить данные");
+        }
+
+        insertGenres(id, genreIds(film));
+        afterCommit(() -> searchIndex.add(id, film.getName(), film.getDescription()));
+        log.info("Новый фильм с id {} сохранен", id);
+        return findById(id);
+    }
 
-            log.info("Информация о фильме с id {} обновлена", film.getId());
-            return findById(film.getId());
-        } catch (EmptyResultDataAccessException e) {
-            log.error("Фильма с id {} еще нет", film.getId());
-            throw new NotFoundException("Ошибка: Фильм с id" + film.getId() + "не найден");
+    @Override
+    public List<Long> addAll(List<Film> films) {
+        films.forEach(this::validateReferences);
+        List<Long> ids = new ArrayList<>(films.size());
+        for (int from = 0; from < films.size(); from += BATCH_SIZE) {
+            List<Film> chunk = films.subList(from, Math.min(from + BATCH_SIZE, films.size()));
+            ids.addAll(transactionTemplate.execute(status -> addChunk(chunk)));
         }
+        log.info("Сохранено {} новых фильмов", ids.size());
+        return ids;
     }
 
     @Override
-    public Film like(long id, long userId) {
-        try {
-            findById(id);
-            userService.findById(userId);
-            SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbc).withTableName("likes");
-            long updated = simpleJdbcInsert.execute(Like.builder().filmId(id).userId(userId).build().toMap());
-
-            if (updated != 0) {
-                log.info("Пользователь с id {} лайкнул фильм с id {}", userId, id);
-                return findById(id);
-            } else {
-                log.error("Произошла ошибка при попытке пользователя с id {} лайкнуть фильм с id {}", userId, id);
-                throw new InternalErrorException("Не удалось лайкнуть фильм");
-            }
-        } catch (EmptyResultDataAccessException e) {
-            log.error("Фильм или пользователь не были найдены при попытке лайкнуть фильм");
-            throw new NotFoundException("Фильм или пользователь не были найдены");
+    @Transactional
+    public Film update(Film film) {
+        validateReferences(film);
+        List<Long> versions = jdbc.queryForList(UPDATE_QUERY, Long.class, film.getDuration(), film.getReleaseDate(), film.getDescription(), film.getName(), film.getMpa().getId(), film.getId());
+        if (versions.isEmpty()) {
+            log.info("Фильм с id {} не найден", film.getId());
+            throw new NotFoundException("Фильм с id " + film.getId() + " не найден");
         }
+        if (film.getGenres() != null) {
+            syncGenres(film.getId(), genreIds(film));
+        }
+        jdbc.update(SYNC_GENRE_YEAR_QUERY, film.getId(), film.getId());
+        // Версия берется из той же строки под блокировкой UPDATE: при одновременных правках
+        // индекс оставит текст последней из них, в каком бы порядке ни пришли afterCommit
+        long version = versions.getFirst();
+        afterCommit(() -> searchIndex.update(film.getId(), version, film.getName(), film.getDescription()));
+
+        log.info("Информация о фильме с id {} обновлена", film.getId());
+        return findById(film.getId());
     }
 
     @Override
+    @Transactional
+    public Film like(long id, long userId) {
+        addLike(id, userId);
+        return findById(id);
+    }
+
+    @Override
+    @Transactional
     public Film removeLike(long id, long userId) {
-        try {
-            findById(id);
-            userService.findById(userId);
-            jdbc.update("DELETE FROM LIKES WHERE FILM_ID = ? AND USER_ID = ?", id, userId);
-            log.info("Пользователь с id {} удалил лайк с фильма с id {}", userId, id);
-            return findById(id);
-        } catch (EmptyResultDataAccessException e) {
-            log.error("Ошибка: не удалось удалить данные");
-            throw new NotFoundException("Ошибка: не удалось удалить данные");
+        deleteLike(id, userId);
+        return findById(id);
+    }
+
+    @Override
+    @Transactional
+    public long addLike(long id, long userId) {
+        checkLikeTargets(id, userId);
+        if (!insertLike(id, userId)) {
+            log.info("Пользователь с id {} уже лайкал фильм с id {}", userId, id);
+            return jdbc.queryForObject(FIND_LIKE_COUNT_QUERY, Long.class, id);
+        }
+        log.info("Пользователь с id {} лайкнул фильм с id {}", userId, id);
+        return changeLikeCount(id, 1);
+    }
+
+    @Override
+    @Transactional
+    public long deleteLike(long id, long userId) {
+        checkLikeTargets(id, userId);
+        if (jdbc.update(DELETE_LIKE_QUERY, id, userId) == 0) {
+            return jdbc.queryForObject(FIND_LIKE_COUNT_QUERY, Long.class, id);
+        }
+        log.info("Пользователь с id {} удалил лайк с фильма с id {}", userId, id);
+        return changeLikeCount(id, -1);
+    }
+
+    @Override
+    public List<Long> findLikes(long id, long after, int limit) {
+        List<Long> userIds = jdbc.queryForList(FIND_LIKES_PAGE_QUERY, Long.class, id, after, limit);
+        if (userIds.isEmpty() && !exists(id)) {
+            log.info("Фильм с id {} не найден", id);
+            throw new NotFoundException("Фильм с id " + id + " не найден");
         }
+        log.info("Выполняется возврат {} лайков фильма с id {} после пользователя с id {}", userIds.size(), id, after);
+        return userIds;
     }
 
     @Override
     public Collection<Film> findPopular(long count) {
-        Collection<Film> films = findAll();
-        Comparator<Film> comparator = Comparator.comparing(film -> film.getLikes().size());
-        Collection<Film> popularFilms = films.stream().sorted(comparator.reversed()).limit(count).toList();
-        log.info("Выполняется возврат самых популярных фильмов");
+        return findPopular(count, FieldSet.ALL);
+    }
+
+    @Override
+    public Collection<Film> findPopular(long count, FieldSet fields) {
+        return findPopular(count, null, null, fields);
+    }
+
+    @Override
+    public Collection<Film> findPopular(long count, Long genreId, Integer year, FieldSet fields) {
+        Collection<Film> popularFilms;
+        if (genreId != null && year != null) {
+            popularFilms = findFilms(FIND_POPULAR_BY_GENRE_AND_YEAR_QUERY, fields, genreId, year, count);
+        } else if (genreId != null) {
+            popularFilms = findFilms(FIND_POPULAR_BY_GENRE_QUERY, fields, genreId, count);
+        } else if (year != null) {
+            popularFilms = findFilms(FIND_POPULAR_BY_YEAR_QUERY, fields, year, count);
+        } else {
+            popularFilms = findFilms(FIND_POPULAR_QUERY, fields, count);
+        }
+        log.info("Выполняется возврат самых популярных фильмов, жанр: {}, год: {}", genreId, year);
         return popularFilms;
     }
+
+    @Override
+    public Collection<Film> search(String query, int count) {
+        List<Long> ids = searchIndex.search(query, count);
+        Map<Long, Film> films = mapById(List.copyOf(findByIds(ids)));
+        log.info("Выполняется поиск фильмов по запросу \"{}\", найдено {}", query, ids.size());
+        return ids.stream().map(films::get).filter(Objects::nonNull).toList();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildSearchIndexInBackground() {
+        Thread.ofVirtual().name("film-search-rebuild").start(this::rebuildSearchIndex);
+    }
+
+    /**
+     * Собирает поисковый индекс заново по названиям и описаниям всех фильмов из БД.
+     */
+    public void rebuildSearchIndex() {
+        searchIndex.rebuild(sink -> jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(FIND_ALL_TEXTS_QUERY, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(BATCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> sink.accept(rs.getLong("film_id"), rs.getLong("version"),
+                rs.getString("name"), rs.getString("description"))));
+    }
+
+    private Collection<Film> findFilms(String sql, FieldSet fields, Object... args) {
+        Map<Long, Film> films = mapById(jdbc.query(sql.formatted(filmRowMapper.columns(fields)), filmRowMapper.withFields(fields), args));
+        loadRelations(films, fields);
+        return films.values();
+    }
+
+    private List<Long> addChunk(List<Film> films) {
+        List<Long> ids = BatchInsertSupport.insertAndReturnKeys(jdbc, ADD_QUERY, "film_id", films, (ps, film) -> {
+            ps.setInt(1, film.getDuration());
+            ps.setString(2, film.getName());
+            ps.setString(3, film.getDescription());
+            ps.setObject(4, film.getReleaseDate());
+            ps.setLong(5, film.getMpa().getId());
+        });
+        if (ids.size() != films.size()) {
+            log.error("Произошла ошибка при попытке сохранить фильмы");
+            throw new InternalErrorException("Не удалось сохранить данные");
+        }
+
+        List<Object[]> genres = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            long filmId = ids.get(i);
+            genreIds(films.get(i)).forEach(genreId -> genres.add(new Object[]{genreId, filmId}));
+        }
+        jdbc.batchUpdate(ADD_GENRE_QUERY, genres);
+        afterCommit(() -> {
+            for (int i = 0; i < films.size(); i++) {
+                searchIndex.add(ids.get(i), films.get(i).getName(), films.get(i).getDescription());
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * Меняет счетчик лайков фильма и его копии в сегментах жанров.
+     */
+    /**
+     * NOT EXISTS не блокирует пару, поэтому одновременный лайк той же пары может упереться в likes_pk:
+     * это тот же повторный лайк, и счетчик не меняется.
+     */
+    private boolean insertLike(long id, long userId) {
+        try {
+            return jdbc.update(ADD_LIKE_QUERY, id, userId, id, userId) > 0;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    private long changeLikeCount(long id, int delta) {
+        long likeCount = jdbc.queryForObject(CHANGE_LIKE_COUNT_QUERY, Long.class, delta, id);
+        jdbc.update(SYNC_GENRE_LIKE_COUNT_QUERY, likeCount, id);
+        return likeCount;
+    }
+
+    /**
+     * Поисковый индекс меняется только после фиксации транзакции: откат не оставит в нем
+     * несохраненных фильмов, а ожидание блокировки индекса не держит транзакцию открытой.
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void checkLikeTargets(long id, long userId) {
+        jdbc.query(LIKE_TARGETS_EXIST_QUERY, rs -> {
+            if (!rs.getBoolean(1)) {
+                log.info("Фильм с id {} не найден", id);
+                throw new NotFoundException("Фильм с id " + id + " не найден");
+            }
+            if (!rs.getBoolean(2)) {
+                log.info("Пользователь с id {} не найден", userId);
+                throw new NotFoundException("Пользователь с id " + userId + " не найден");
+            }
+        }, id, userId);
+    }
+
+    private void validateReferences(Film film) {
+        if (!referenceData.hasRating(film.getMpa().getId())) {
+            log.info("Рейтинга с id {} еще нет", film.getMpa().getId());
+            throw new WrongArgumentException("Рейтинга с таким id еще нет");
+        }
+        for (Genre genre : genresOf(film)) {
+            if (!referenceData.hasGenre(genre.getId())) {
+                log.info("Жанра с id {} еще нет", genre.getId());
+                throw new WrongArgumentException("Жанра с таким id еще нет");
+            }
+        }
+    }
+
+    private Set<Long> genreIds(Film film) {
+        Set<Long> ids = new LinkedHashSet<>();
+        genresOf(film).forEach(genre -> ids.add(genre.getId()));
+        return ids;
+    }
+
+    private static Set<Genre> genresOf(Film film) {
+        return film.getGenres() == null ? Set.of() : film.getGenres();
+    }
+
+    private void syncGenres(long filmId, Set<Long> genreIds) {
+        Set<Long> current = new HashSet<>(jdbc.queryForList(FIND_GENRE_IDS_QUERY, Long.class, filmId));
+        List<Long> removed = current.stream().filter(genreId -> !genreIds.contains(genreId)).toList();
+        List<Long> added = genreIds.stream().filter(genreId -> !current.contains(genreId)).toList();
+
+        jdbc.batchUpdate(DELETE_GENRE_QUERY, removed.stream().map(genreId -> new Object[]{filmId, genreId}).toList());
+        insertGenres(filmId, added);
+    }
+
+    private void insertGenres(long filmId, Collection<Long> genreIds) {
+        jdbc.batchUpdate(ADD_GENRE_QUERY, genreIds.stream().map(genreId -> new Object[]{genreId, filmId}).toList());
+    }
+
+    private void flushChunk(Map<Long, Film> chunk, Consumer<Film> consumer) {
+        loadRelations(chunk, FieldSet.ALL);
+        chunk.values().forEach(consumer);
+        chunk.clear();
+    }
+
+    private Map<Long, Film> mapById(List<Film> films) {
+        Map<Long, Film> result = new LinkedHashMap<>();
+        films.forEach(film -> result.put(film.getId(), film));
+        return result;
+    }
+
+    /**
+     * Лайки и жанры читаются только для запрошенных полей.
+     */
+    private void loadRelations(Map<Long, Film> films, FieldSet fields) {
+        boolean likes = fields.includes("likes");
+        boolean genres = fields.includes("genres");
+        if (!likes && !genres) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(films.keySet());
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            MapSqlParameterSource params = new MapSqlParameterSource("ids", ids.subList(from, Math.min(from + BATCH_SIZE, ids.size())));
+            if (likes) {
+                namedJdbc.query(FIND_LIKES_BY_FILMS_QUERY, params, likesHandler(films));
+            }
+            if (genres) {
+                namedJdbc.query(FIND_GENRES_BY_FILMS_QUERY, params, genresHandler(films));
+            }
+        }
+    }
+
+    private RowCallbackHandler likesHandler(Map<Long, Film> films) {
+        return rs -> {
+            Film film = films.get(rs.getLong("film_id"));
+            if (film != null) {
+                film.getLikes().add(rs.getLong("user_id"));
+            }
+        };
+    }
+
+    private RowCallbackHandler genresHandler(Map<Long, Film> films) {
+        return rs -> {
+            Film film = films.get(rs.getLong("film_id"));
+            Genre genre = referenceData.getGenre(rs.getLong("genre_id"));
+            if (film != null && genre != null) {
+                film.getGenres().add(genre);
+            }
+        };
+    }
 }
@@ -0,0 +1,543 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Инвертированный индекс по названиям и описаниям фильмов с ранжированием BM25. Для каждого слова
+ * хранится список фильмов в примитивных массивах: id фильма и сколько раз слово в нем встречается.
+ * Слова названия весят NAME_WEIGHT слов описания. Последнее слово запроса ищется по префиксу,
+ * чтобы поиск работал как автодополнение.
+ * <p>
+ * Изменения выполняются под одной блокировкой, поиск идет без блокировок: списки публикуются
+ * неизменяемыми снимками, как в CompactLongSet.
+ * <p>
+ * Для каждого фильма индекс помнит его слова и версию, с которой они записаны, поэтому update
+ * не зависит от старого текста, прочитанного вызывающим кодом, а запоздавшее обновление с более
+ * старой версией не затирает новое.
+ */
+@Slf4j
+public class FilmSearchIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int NAME_WEIGHT = 3;
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final int MAX_PREFIX_TERMS = 32;
+    private static final int CHUNK_SIZE = 20_000;
+    private static final int DENSE_SCORING_RATIO = 16;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Index index = new Index(new ConcurrentSkipListMap<>());
+
+    /**
+     * Слова текста в нижнем регистре, ё заменяется на е. Словом считается непрерывная
+     * последовательность букв и цифр любого алфавита.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                c = Character.toLowerCase(c);
+                token.append(c == 'ё' ? 'е' : c);
+            } else if (!token.isEmpty()) {
+                if (token.length() >= MIN_TOKEN_LENGTH) {
+                    tokens.add(token.toString());
+                }
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    public void add(long filmId, String name, String description) {
+        lock.lock();
+        try {
+            index.add(documentOf(filmId, name, description));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Заменяет слова фильма, если version новее записанной в индексе.
+     */
+    public void update(long filmId, long version, String name, String description) {
+        lock.lock();
+        try {
+            index.replace(documentOf(filmId, name, description), version);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Собирает индекс заново. source передает фильмы по возрастанию id; они разбиваются на пачки,
+     * каждая пачка индексируется отдельно в ForkJoinPool, затем пачки склеиваются по порядку.
+     * Изменения, пришедшие во время пересборки, ждут ее окончания.
+     */
+    public void rebuild(Consumer<DocumentSink> source) {
+        lock.lock();
+        try {
+            long start = System.currentTimeMillis();
+            List<CompletableFuture<Segment>> segments = new ArrayList<>();
+            List<Document> chunk = new ArrayList<>(CHUNK_SIZE);
+            source.accept((filmId, version, name, description) -> {
+                chunk.add(new Document(Math.toIntExact(filmId), version, name, description, null, 0));
+                if (chunk.size() == CHUNK_SIZE) {
+                    List<Document> full = List.copyOf(chunk);
+                    segments.add(CompletableFuture.supplyAsync(() -> Segment.of(full)));
+                    chunk.clear();
+                }
+            });
+            List<Document> last = List.copyOf(chunk);
+            segments.add(CompletableFuture.supplyAsync(() -> Segment.of(last)));
+
+            Index rebuilt = new Index(new ConcurrentSkipListMap<>());
+            for (CompletableFuture<Segment> segment : segments) {
+                rebuilt.append(segment.join());
+            }
+            index = rebuilt;
+            log.info("Поисковый индекс собран: {} фильмов, {} слов за {} мс",
+                    rebuilt.documents, rebuilt.terms.size(), System.currentTimeMillis() - start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * id фильмов по убыванию BM25, при равенстве - по возрастанию id.
+     */
+    public List<Long> search(String query, int count) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+        boolean prefixLast = !Character.isWhitespace(query.charAt(query.length() - 1));
+        Index current = index;
+        List<Postings> matched = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (i == tokens.size() - 1 && prefixLast) {
+                matched.addAll(current.prefixTerms(token));
+            } else {
+                Postings postings = current.terms.get(token);
+                if (postings != null) {
+                    matched.add(postings);
+                }
+            }
+        }
+        return current.top(matched, count);
+    }
+
+    private static Document documentOf(long filmId, String name, String description) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        tokenize(name).forEach(token -> frequencies.merge(token, NAME_WEIGHT, Integer::sum));
+        tokenize(description).forEach(token -> frequencies.merge(token, 1, Integer::sum));
+        int length = frequencies.values().stream().mapToInt(Integer::intValue).sum();
+        return new Document(Math.toIntExact(filmId), 0, name, description, frequencies, length);
+    }
+
+    @FunctionalInterface
+    public interface DocumentSink {
+        void accept(long filmId, long version, String name, String description);
+    }
+
+    private record Document(int filmId, long version, String name, String description,
+                            Map<String, Integer> frequencies, int length) {
+    }
+
+    /**
+     * Индекс одной пачки фильмов, собранный независимо от остальных.
+     */
+    private record Segment(Map<String, Postings> terms, int[] filmIds, int[] lengths, long[] versions,
+                           String[][] documentTerms) {
+        static Segment of(List<Document> documents) {
+            Map<String, Postings> terms = new HashMap<>();
+            int[] filmIds = new int[documents.size()];
+            int[] lengths = new int[documents.size()];
+            long[] versions = new long[documents.size()];
+            String[][] documentTerms = new String[documents.size()][];
+            for (int i = 0; i < documents.size(); i++) {
+                Document document = documentOf(documents.get(i).filmId(), documents.get(i).name(),
+                        documents.get(i).description());
+                filmIds[i] = document.filmId();
+                lengths[i] = document.length();
+                versions[i] = documents.get(i).version();
+                documentTerms[i] = document.frequencies().keySet().toArray(String[]::new);
+                document.frequencies().forEach((term, frequency) ->
+                        terms.computeIfAbsent(term, t -> new Postings()).add(document.filmId(), frequency));
+            }
+            return new Segment(terms, filmIds, lengths, versions, documentTerms);
+        }
+    }
+
+    private static final class Index {
+        private final ConcurrentSkipListMap<String, Postings> terms;
+        private volatile int[] lengths = new int[16];
+        private volatile int documents;
+        private volatile long totalLength;
+        // Слова и версии фильмов по id; читаются и меняются только под блокировкой индекса
+        private String[][] documentTerms = new String[16][];
+        private long[] versions = new long[16];
+
+        Index(ConcurrentSkipListMap<String, Postings> terms) {
+            this.terms = terms;
+        }
+
+        void add(Document document) {
+            if (lengthOf(document.filmId()) > 0) {
+                return;
+            }
+            document.frequencies().forEach((term, frequency) ->
+                    terms.computeIfAbsent(term, t -> new Postings()).add(document.filmId(), frequency));
+            setLength(document.filmId(), document.length());
+            setTerms(document.filmId(), document.frequencies().keySet().toArray(String[]::new));
+        }
+
+        void replace(Document document, long version) {
+            int filmId = document.filmId();
+            if (filmId < versions.length && versions[filmId] >= version) {
+                return;
+            }
+            String[] old = filmId < documentTerms.length ? documentTerms[filmId] : null;
+            if (old != null) {
+                for (String term : old) {
+                    Postings postings = terms.get(term);
+                    if (postings != null && postings.remove(filmId) && postings.size() == 0) {
+                        terms.remove(term);
+                    }
+                }
+                setLength(filmId, 0);
+            }
+            add(document);
+            versions[filmId] = version;
+        }
+
+        /**
+         * Дописывает пачку с большими id, чем у всех уже добавленных фильмов.
+         */
+        void append(Segment segment) {
+            segment.terms().forEach((term, postings) ->
+                    terms.computeIfAbsent(term, t -> new Postings()).append(postings));
+            for (int i = 0; i < segment.filmIds().length; i++) {
+                setLength(segment.filmIds()[i], segment.lengths()[i]);
+                setTerms(segment.filmIds()[i], segment.documentTerms()[i]);
+                versions[segment.filmIds()[i]] = segment.versions()[i];
+            }
+        }
+
+        /**
+         * Слова с данным префиксом, не больше MAX_PREFIX_TERMS самых частых.
+         */
+        List<Postings> prefixTerms(String prefix) {
+            Collection<Postings> matches = terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+            if (matches.size() <= MAX_PREFIX_TERMS) {
+                return List.copyOf(matches);
+            }
+            return matches.stream()
+                    .sorted(Comparator.comparingInt(Postings::size).reversed())
+                    .limit(MAX_PREFIX_TERMS)
+                    .toList();
+        }
+
+        /**
+         * Если списки короткие, обходит их одновременно по возрастанию id, как при слиянии: списки
+         * лежат в куче по текущему id, оценка фильма считается целиком за один шаг, и в памяти
+         * держатся только count лучших. Если фильмов в списках сравнимо с размером каталога, оценки
+         * складываются в массив по id фильма - так дешевле, чем перекладывать кучу на каждом фильме.
+         */
+        List<Long> top(List<Postings> matched, int count) {
+            int terms = matched.size();
+            Postings.Snapshot[] snapshots = new Postings.Snapshot[terms];
+            int[] positions = new int[terms];
+            double[] idf = new double[terms];
+            int[] cursors = new int[terms];
+            int cursorCount = 0;
+            int[] currentLengths = lengths;
+            int currentDocuments = documents;
+            double averageLength = currentDocuments == 0 ? 1 : (double) totalLength / currentDocuments;
+            for (int i = 0; i < terms; i++) {
+                snapshots[i] = matched.get(i).snapshot;
+                int size = snapshots[i].size();
+                idf[i] = Math.log(1 + (currentDocuments - size + 0.5) / (size + 0.5));
+                if (size > 0) {
+                    cursors[cursorCount] = i;
+                    siftUp(cursors, cursorCount++, snapshots, positions);
+                }
+            }
+
+            TopK top = new TopK(Math.min(count, currentDocuments));
+            long postings = Arrays.stream(snapshots).mapToLong(Postings.Snapshot::size).sum();
+            if (terms > 1 && postings * DENSE_SCORING_RATIO > currentLengths.length) {
+                // Списки могли получить фильмы, которых еще нет в прочитанном массиве длин
+                int maxFilmId = Arrays.stream(snapshots)
+                        .filter(snapshot -> snapshot.size() > 0)
+                        .mapToInt(snapshot -> snapshot.filmIds()[snapshot.size() - 1])
+                        .max()
+                        .orElse(0);
+                double[] scores = new double[maxFilmId + 1];
+                for (int i = 0; i < terms; i++) {
+                    Postings.Snapshot snapshot = snapshots[i];
+                    for (int j = 0; j < snapshot.size(); j++) {
+                        int filmId = snapshot.filmIds()[j];
+                        int length = filmId < currentLengths.length ? currentLengths[filmId] : 0;
+                        double frequency = snapshot.frequencies()[j];
+                        scores[filmId] += idf[i] * frequency * (K1 + 1)
+                                / (frequency + K1 * (1 - B + B * length / averageLength));
+                    }
+                }
+                for (int filmId = 0; filmId < scores.length; filmId++) {
+                    if (scores[filmId] > 0) {
+                        top.offer(filmId, scores[filmId]);
+                    }
+                }
+                return top.toList();
+            }
+            while (cursorCount > 0) {
+                int filmId = snapshots[cursors[0]].filmIds()[positions[cursors[0]]];
+                int length = filmId < currentLengths.length ? currentLengths[filmId] : 0;
+                double norm = K1 * (1 - B + B * length / averageLength);
+                double score = 0;
+                while (cursorCount > 0 && snapshots[cursors[0]].filmIds()[positions[cursors[0]]] == filmId) {
+                    int term = cursors[0];
+                    double frequency = snapshots[term].frequencies()[positions[term]];
+                    score += idf[term] * frequency * (K1 + 1) / (frequency + norm);
+                    if (++positions[term] == snapshots[term].size()) {
+                        cursors[0] = cursors[--cursorCount];
+                    }
+                    siftDown(cursors, cursorCount, snapshots, positions);
+                }
+                top.offer(filmId, score);
+            }
+            return top.toList();
+        }
+
+        private static void siftUp(int[] cursors, int slot, Postings.Snapshot[] snapshots, int[] positions) {
+            while (slot > 0) {
+                int parent = (slot - 1) / 2;
+                if (current(cursors[parent], snapshots, positions) <= current(cursors[slot], snapshots, positions)) {
+                    return;
+                }
+                int cursor = cursors[slot];
+                cursors[slot] = cursors[parent];
+                cursors[parent] = cursor;
+                slot = parent;
+            }
+        }
+
+        private static void siftDown(int[] cursors, int size, Postings.Snapshot[] snapshots, int[] positions) {
+            int slot = 0;
+            while (true) {
+                int smallest = slot;
+                for (int child = 2 * slot + 1; child <= 2 * slot + 2 && child < size; child++) {
+                    if (current(cursors[child], snapshots, positions) < current(cursors[smallest], snapshots, positions)) {
+                        smallest = child;
+                    }
+                }
+                if (smallest == slot) {
+                    return;
+                }
+                int cursor = cursors[slot];
+                cursors[slot] = cursors[smallest];
+                cursors[smallest] = cursor;
+                slot = smallest;
+            }
+        }
+
+        private static int current(int term, Postings.Snapshot[] snapshots, int[] positions) {
+            return snapshots[term].filmIds()[positions[term]];
+        }
+
+        private int lengthOf(int filmId) {
+            int[] current = lengths;
+            return filmId < current.length ? current[filmId] : 0;
+        }
+
+        private void setLength(int filmId, int length) {
+            int[] current = lengths;
+            if (filmId >= current.length) {
+                current = Arrays.copyOf(current, Math.max(filmId + 1, current.length * 2));
+            }
+            int old = current[filmId];
+            current[filmId] = length;
+            lengths = current;
+            documents += Integer.signum(length) - Integer.signum(old);
+            totalLength += length - old;
+        }
+
+        private void setTerms(int filmId, String[] filmTerms) {
+            if (filmId >= documentTerms.length) {
+                int capacity = Math.max(filmId + 1, documentTerms.length * 2);
+                documentTerms = Arrays.copyOf(documentTerms, capacity);
+                versions = Arrays.copyOf(versions, capacity);
+            }
+            documentTerms[filmId] = filmTerms;
+        }
+    }
+
+    /**
+     * count лучших фильмов в куче на примитивных массивах: в корне худший из отобранных.
+     */
+    private static final class TopK {
+        private final int[] filmIds;
+        private final double[] scores;
+        private int size;
+
+        TopK(int capacity) {
+            filmIds = new int[Math.max(capacity, 0)];
+            scores = new double[Math.max(capacity, 0)];
+        }
+
+        void offer(int filmId, double score) {
+            if (size < filmIds.length) {
+                filmIds[size] = filmId;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (size > 0 && worse(0, filmId, score)) {
+                filmIds[0] = filmId;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        List<Long> toList() {
+            Long[] result = new Long[size];
+            for (int i = result.length - 1; i >= 0; i--) {
+                result[i] = (long) filmIds[0];
+                size--;
+                filmIds[0] = filmIds[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+            return List.of(result);
+        }
+
+        /**
+         * Фильм в ячейке slot хуже данного: оценка ниже, а при равенстве id больше.
+         */
+        private boolean worse(int slot, int filmId, double score) {
+            return scores[slot] < score || scores[slot] == score && filmIds[slot] > filmId;
+        }
+
+        private void siftUp(int slot) {
+            while (slot > 0) {
+                int parent = (slot - 1) / 2;
+                if (!worse(slot, filmIds[parent], scores[parent])) {
+                    return;
+                }
+                swap(slot, parent);
+                slot = parent;
+            }
+        }
+
+        private void siftDown(int slot) {
+            while (true) {
+                int worst = slot;
+                for (int child = 2 * slot + 1; child <= 2 * slot + 2 && child < size; child++) {
+                    if (worse(child, filmIds[worst], scores[worst])) {
+                        worst = child;
+                    }
+                }
+                if (worst == slot) {
+                    return;
+                }
+                swap(slot, worst);
+                slot = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int filmId = filmIds[a];
+            double score = scores[a];
+            filmIds[a] = filmIds[b];
+            scores[a] = scores[b];
+            filmIds[b] = filmId;
+            scores[b] = score;
+        }
+    }
+
+    /**
+     * Список фильмов со словом по возрастанию id. Запись идет под блокировкой индекса, чтение -
+     * по опубликованному снимку, который после публикации не меняется в пределах своего size.
+     */
+    private static final class Postings {
+        private volatile Snapshot snapshot = new Snapshot(new int[2], new short[2], 0);
+
+        int size() {
+            return snapshot.size();
+        }
+
+        void add(int filmId, int frequency) {
+            Snapshot current = snapshot;
+            short value = (short) Math.min(frequency, Short.MAX_VALUE);
+            int size = current.size();
+            if (size == 0 || current.filmIds()[size - 1] < filmId) {
+                int[] filmIds = current.filmIds();
+                short[] frequencies = current.frequencies();
+                if (size == filmIds.length) {
+                    filmIds = Arrays.copyOf(filmIds, size * 2);
+                    frequencies = Arrays.copyOf(frequencies, size * 2);
+                }
+                filmIds[size] = filmId;
+                frequencies[size] = value;
+                snapshot = new Snapshot(filmIds, frequencies, size + 1);
+                return;
+            }
+            int position = Arrays.binarySearch(current.filmIds(), 0, size, filmId);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            int[] filmIds = new int[size + 1];
+            short[] frequencies = new short[size + 1];
+            System.arraycopy(current.filmIds(), 0, filmIds, 0, position);
+            System.arraycopy(current.frequencies(), 0, frequencies, 0, position);
+            filmIds[position] = filmId;
+            frequencies[position] = value;
+            System.arraycopy(current.filmIds(), position, filmIds, position + 1, size - position);
+            System.arraycopy(current.frequencies(), position, frequencies, position + 1, size - position);
+            snapshot = new Snapshot(filmIds, frequencies, size + 1);
+        }
+
+        void append(Postings other) {
+            Snapshot current = snapshot;
+            Snapshot added = other.snapshot;
+            int size = current.size() + added.size();
+            int[] filmIds = Arrays.copyOf(current.filmIds(), size);
+            short[] frequencies = Arrays.copyOf(current.frequencies(), size);
+            System.arraycopy(added.filmIds(), 0, filmIds, current.size(), added.size());
+            System.arraycopy(added.frequencies(), 0, frequencies, current.size(), added.size());
+            snapshot = new Snapshot(filmIds, frequencies, size);
+        }
+
+        boolean remove(int filmId) {
+            Snapshot current = snapshot;
+            int position = Arrays.binarySearch(current.filmIds(), 0, current.size(), filmId);
+            if (position < 0) {
+                return false;
+            }
+            int size = current.size() - 1;
+            int[] filmIds = new int[Math.max(size, 1)];
+            short[] frequencies = new short[Math.max(size, 1)];
+            System.arraycopy(current.filmIds(), 0, filmIds, 0, position);
+            System.arraycopy(current.frequencies(), 0, frequencies, 0, position);
+            System.arraycopy(current.filmIds(), position + 1, filmIds, position, size - position);
+            System.arraycopy(current.frequencies(), position + 1, frequencies, position, size - position);
+            snapshot = new Snapshot(filmIds, frequencies, size);
+            return true;
+        }
+
+        private record Snapshot(int[] filmIds, short[] frequencies, int size) {
+        }
+    }
+}
@@ -1,21 +1,73 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import ru.yandex.practicum.filmorate.model.FieldSet;
 import ru.yandex.practicum.filmorate.model.film.Film;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Collection<Film> findAll();
 
+    /**
+     * Фильмы только с запрошенными полями: незапрошенные колонки и связи не читаются.
+     */
+    Collection<Film> findAll(FieldSet fields);
+
+    Collection<Film> findPage(long after, int limit);
+
+    Collection<Film> findPage(long after, int limit, FieldSet fields);
+
+    void streamAll(Consumer<Film> consumer);
+
     Film findById(long id);
 
+    Film findById(long id, FieldSet fields);
+
+    Collection<Film> findByIds(Collection<Long> ids);
+
+    /**
+     * Версия фильма, которая увеличивается при каждом изменении, в том числе при лайке и снятии лайка.
+     */
+    long findVersion(long id);
+
+    boolean exists(long id);
+
+    boolean existsAll(Collection<Long> ids);
+
     Film add(Film film);
 
+    List<Long> addAll(List<Film> films);
+
     Film update(Film film);
 
     Film like(long id, long userId);
 
     Film removeLike(long id, long userId);
 
+    long addLike(long id, long userId);
+
+    long deleteLike(long id, long userId);
+
+    /**
+     * Страница id пользователей, лайкнувших фильм, по возрастанию id после after.
+     */
+    List<Long> findLikes(long id, long after, int limit);
+
     Collection<Film> findPopular(long count);
+
+    Collection<Film> findPopular(long count, FieldSet fields);
+
+    /**
+     * Самые популярные фильмы жанра genreId и года выпуска year; null - без ограничения. Каждый
+     * сегмент хранит свой порядок по лайкам, поэтому читаются только фильмы этого сегмента.
+     */
+    Collection<Film> findPopular(long count, Long genreId, Integer year, FieldSet fields);
+
+    /**
+     * Фильмы, в названии или описании которых есть слова запроса, по убыванию релевантности.
+     * Последнее слово запроса может быть началом слова.
+     */
+    Collection<Film> search(String query, int count);
 }
@@ -5,23 +5,26 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.WrongMethodException;
+import ru.yandex.practicum.filmorate.model.FieldSet;
 import ru.yandex.practicum.filmorate.model.film.Film;
 import ru.yandex.practicum.filmorate.model.user.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 
-import java.util.Collection;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Component("inMemoryFilmStorage")
 @Slf4j
 public class InMemoryFilmStorage implements FilmStorage {
     private final UserService userService;
 
-    private int idCount = 0;
+    private final AtomicLong idCount = new AtomicLong();
     private static final String INPUT_ERROR = "User Input Error";
-    private final Map<Long, Film> films = new HashMap<>();
+    private final Map<Long, Film> films = new ConcurrentHashMap<>();
+    private final SegmentedPopularityIndex popularity = new SegmentedPopularityIndex();
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex();
 
     @Autowired
     public InMemoryFilmStorage(UserService userService) {
@@ -34,15 +37,67 @@ public class InMemoryFilmStorage implements FilmStorage {
         return films.values();
     }
 
+    @Override
+    public Collection<Film> findAll(FieldSet fields) {
+        return findAll();
+    }
+
+    @Override
+    public Collection<Film> findPage(long after, int limit, FieldSet fields) {
+        return findPage(after, limit);
+    }
+
+    @Override
+    public Collection<Film> findPage(long after, int limit) {
+        List<Film> page = new ArrayList<>();
+        for (long id = after + 1, last = idCount.get(); id <= last && page.size() < limit; id++) {
+            Film film = films.get(id);
+            if (film != null) {
+                page.add(film);
+            }
+        }
+        log.info("Выполняется возврат {} фильмов после id {}", page.size(), after);
+        return page;
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> consumer) {
+        films.values().forEach(consumer);
+    }
+
     @Override
     public Film findById(long id) {
-        if (!films.containsKey(id)) {
-            String message = "Фильм c id" + id + " не найден";
-            log.info("{}: {}", INPUT_ERROR, message);
-            throw new NotFoundException(message);
+        Film film = films.get(id);
+        if (film == null) {
+            throw notFound(id);
         }
         log.info("Фильм с id {} найден", id);
-        return films.get(id);
+        return film;
+    }
+
+    @Override
+    public Film findById(long id, FieldSet fields) {
+        return findById(id);
+    }
+
+    @Override
+    public Collection<Film> findByIds(Collection<Long> ids) {
+        return ids.stream().distinct().map(films::get).filter(Objects::nonNull).toList();
+    }
+
+    @Override
+    public long findVersion(long id) {
+        return findById(id).getVersion();
+    }
+
+    @Override
+    public boolean exists(long id) {
+        return films.containsKey(id);
+    }
+
+    @Override
+    public boolean existsAll(Collection<Long> ids) {
+        return ids.stream().allMatch(films::containsKey);
     }
 
     @Override
@@ -51,12 +106,24 @@ public class InMemoryFilmStorage implements FilmStorage {
             throw new WrongMethodException("Если вы хотите обновить фильм, воспользуйтесь методом PUT");
         }
 
-        film.setId(++idCount);
+        film.setId(idCount.incrementAndGet());
+        if (film.getGenres() == null) {
+            film.setGenres(new TreeSet<>());
+        }
         films.put(film.getId(), film);
+        popularity.put(film);
+        searchIndex.add(film.getId(), film.getName(), film.getDescription());
         log.info("Фильм {} добавлен", film);
         return film;
     }
 
+    @Override
+    public List<Long> addAll(List<Film> films) {
+        List<Long> ids = films.stream().map(film -> add(film).getId()).toList();
+        log.info("Добавлено фильмов: {}", ids.size());
+        return ids;
+    }
+
     @Override
     public Film update(Film film) {
         if (film.getId() == 0) {
@@ -64,60 +131,124 @@ public class InMemoryFilmStorage implements FilmStorage {
             log.info("{}: {}", INPUT_ERROR, message);
             throw new NotFoundException(message);
         }
-        if (!films.containsKey(film.getId())) {
-            String message = "Фильм c id" + film.getId() + " не найден";
-            log.info("{}: {}", INPUT_ERROR, message);
-            throw new NotFoundException(message);
-        }
-
-        Film oldFIlm = films.get(film.getId());
-
-        if (film.getName() == null) {
-            film.setName(oldFIlm.getName());
-        }
-        if (film.getDescription() == null) {
-            film.setDescription(oldFIlm.getDescription());
-        }
-        if (film.getDuration() == 0) {
-            film.setDuration(oldFIlm.getDuration());
-        }
-        if (film.getReleaseDate() == null) {
-            film.setReleaseDate(oldFIlm.getReleaseDate());
+        Film updated = films.computeIfPresent(film.getId(), (id, oldFilm) -> {
+            if (film.getName() == null) {
+                film.setName(oldFilm.getName());
+            }
+            if (film.getDescription() == null) {
+                film.setDescription(oldFilm.getDescription());
+            }
+            if (film.getDuration() == 0) {
+                film.setDuration(oldFilm.getDuration());
+            }
+            if (film.getReleaseDate() == null) {
+                film.setReleaseDate(oldFilm.getReleaseDate());
+            }
+            if (film.getGenres() == null) {
+                film.setGenres(oldFilm.getGenres());
+            }
+            film.setLikes(oldFilm.getLikes());
+            film.setLikeCount(oldFilm.getLikeCount());
+            film.setVersion(oldFilm.getVersion() + 1);
+            popularity.replace(oldFilm, film);
+            searchIndex.update(id, film.getVersion(), film.getName(), film.getDescription());
+            return film;
+        });
+        if (updated == null) {
+            throw notFound(film.getId());
         }
-
-        films.put(film.getId(), film);
         log.info("Фильм с id {} обновлен: {}", film.getId(), film);
         return film;
     }
 
     public Film like(long id, long userId) {
+        addLike(id, userId);
+        return findById(id);
+    }
+
+    public Film removeLike(long id, long userId) {
+        deleteLike(id, userId);
+        return findById(id);
+    }
+
+    @Override
+    public long addLike(long id, long userId) {
         Film film = findById(id);
         User user = userService.findById(userId);
-        film.getLikes().add(userId);
-        update(film);
+        if (film.getLikes().add(userId)) {
+            refreshPopularity(id);
+            likesChanged(film);
+        }
         log.info("Пользователь {} лайкнул фильм {}", user.getLogin(), film.getName());
-        return film;
+        return film.getLikes().size();
     }
 
-    public Film removeLike(long id, long userId) {
+    @Override
+    public long deleteLike(long id, long userId) {
         Film film = findById(id);
-        if (!film.getLikes().contains(userId)) {
+        if (!film.getLikes().remove(userId)) {
             log.error("Пользователь с id {} хотел убрать лайк с фильма, который еще не был оценен", userId);
             throw new NotFoundException("Пользователь с id " + userId + " не лайкал этот фильм");
         }
-
-        film.getLikes().remove(userId);
-        update(film);
+        refreshPopularity(id);
+        likesChanged(film);
         log.info("Пользователь с id {} снял лайк с фильма {}", userId, film.getName());
-        return film;
+        return film.getLikes().size();
+    }
+
+    @Override
+    public List<Long> findLikes(long id, long after, int limit) {
+        return findById(id).getLikes().stream().filter(userId -> userId > after).limit(limit).toList();
+    }
+
+    @Override
+    public Collection<Film> findPopular(long count, FieldSet fields) {
+        return findPopular(count);
+    }
 
+    @Override
+    public Collection<Film> findPopular(long count, Long genreId, Integer year, FieldSet fields) {
+        Collection<Film> popularFilms = popularity.top(count, genreId, year).stream().map(films::get).toList();
+        log.info("Выполняется возврат самых популярных фильмов, жанр: {}, год: {}", genreId, year);
+        return popularFilms;
+    }
+
+    @Override
+    public Collection<Film> search(String query, int count) {
+        return searchIndex.search(query, count).stream().map(films::get).filter(Objects::nonNull).toList();
     }
 
     public Collection<Film> findPopular(long count) {
-        Collection<Film> films = findAll();
-        Comparator<Film> comparator = Comparator.comparing(film -> film.getLikes().size());
-        Collection<Film> popularFilms = films.stream().sorted(comparator.reversed()).limit(count).toList();
+        Collection<Film> popularFilms = popularity.top(count, null, null).stream().map(films::get).toList();
         log.info("Выполняется возврат списка самых популярных фильмов");
         return popularFilms;
     }
+
+    /**
+     * Сегменты обновляются под блокировкой записи фильма, как и при update, поэтому лайк
+     * не вернет фильм в сегменты жанров, из которых его только что убрали.
+     */
+    private void refreshPopularity(long id) {
+        films.computeIfPresent(id, (key, film) -> {
+            popularity.put(film);
+            return film;
+        });
+    }
+
+    /**
+     * Счетчик лайков и версия меняются под одной блокировкой фильма: счетчик берется из набора
+     * лайков внутри нее, поэтому последний писатель всегда оставляет актуальное значение.
+     */
+    private void likesChanged(Film film) {
+        synchronized (film) {
+            film.setLikeCount(film.getLikes().size());
+            film.setVersion(film.getVersion() + 1);
+        }
+    }
+
+    private NotFoundException notFound(long id) {
+        String message = "Фильм c id" + id + " не найден";
+        log.info("{}: {}", INPUT_ERROR, message);
+        return new NotFoundException(message);
+    }
 }
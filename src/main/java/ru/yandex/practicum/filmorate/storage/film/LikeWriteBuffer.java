@@ -0,0 +1,218 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.film.Film;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Отложенная запись лайков: события копятся в памяти и раз в flush-interval или при batch-size
+ * ожидающих пар пишутся в likes одним пакетом. Хранятся только пары, состояние которых отличается
+ * от БД, поэтому лайк и снятие лайка одной пары взаимно уничтожаются. При capacity ожидающих пар
+ * запрос сам сбрасывает буфер. Сброс держит блокировку на запись, чтобы новые события видели
+ * в БД уже записанное состояние.
+ */
+@Component
+@ConditionalOnProperty(value = "filmorate.likes.write-behind.enabled", havingValue = "true")
+@Slf4j
+public class LikeWriteBuffer {
+    private static final String LIKE_STATE_QUERY = "SELECT (SELECT like_count FROM film WHERE film_id = ?), "
+            + "EXISTS (SELECT 1 FROM users WHERE user_id = ?), "
+            + "EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)";
+    private static final String MERGE_LIKE_QUERY = "MERGE INTO likes (film_id, user_id) KEY (film_id, user_id) VALUES (?, ?)";
+    private static final String DELETE_LIKE_QUERY = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
+    private static final String RECOUNT_LIKES_QUERY = "UPDATE film SET like_count = "
+            + "(SELECT COUNT(*) FROM likes WHERE film_id = ?), version = version + 1 WHERE film_id = ?";
+    private static final String SYNC_GENRE_LIKE_COUNT_QUERY = "UPDATE film_genre SET like_count = "
+            + "(SELECT like_count FROM film WHERE film_id = ?) WHERE film_id = ?";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int capacity;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("like-flusher").daemon().factory());
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Map<Long, Boolean>> pending = new ConcurrentHashMap<>();
+    private final Map<Long, Long> deltas = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    @Autowired
+    public LikeWriteBuffer(JdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+                           @Value("${filmorate.likes.write-behind.flush-interval:200ms}") Duration flushInterval,
+                           @Value("${filmorate.likes.write-behind.batch-size:1000}") int batchSize,
+                           @Value("${filmorate.likes.write-behind.capacity:10000}") int capacity) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.capacity = Math.max(capacity, batchSize);
+        flusher.scheduleWithFixedDelay(this::scheduledFlush, flushInterval.toMillis(), flushInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ставит лайк в очередь и возвращает число лайков фильма с учетом еще не записанных.
+     */
+    public long like(long filmId, long userId) {
+        return enqueue(filmId, userId, true);
+    }
+
+    public long unlike(long filmId, long userId) {
+        return enqueue(filmId, userId, false);
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean hasPending(long filmId) {
+        Map<Long, Boolean> filmPending = pending.get(filmId);
+        return filmPending != null && !filmPending.isEmpty();
+    }
+
+    /**
+     * Незаписанные лайки фильма: true - лайк, false - снятие лайка.
+     */
+    public Map<Long, Boolean> findPending(long filmId) {
+        return Map.copyOf(pending.getOrDefault(filmId, Map.of()));
+    }
+
+    /**
+     * Накладывает незаписанные лайки фильма на его набор likes и счетчик likeCount.
+     */
+    public Film apply(Film film) {
+        Map<Long, Boolean> filmPending = pending.get(film.getId());
+        if (filmPending != null) {
+            filmPending.forEach((userId, liked) -> {
+                if (liked) {
+                    film.getLikes().add(userId);
+                } else {
+                    film.getLikes().remove(userId);
+                }
+            });
+        }
+        film.setLikeCount(film.getLikeCount() + deltas.getOrDefault(film.getId(), 0L));
+        return film;
+    }
+
+    /**
+     * Изменение числа лайков фильмов, еще не записанное в БД.
+     */
+    public Map<Long, Long> pendingDeltas() {
+        return Map.copyOf(deltas);
+    }
+
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            flushRequested.set(false);
+            if (size.get() == 0) {
+                return;
+            }
+            List<Object[]> added = new ArrayList<>();
+            List<Object[]> removed = new ArrayList<>();
+            List<Object[]> films = new ArrayList<>();
+            pending.forEach((filmId, users) -> {
+                users.forEach((userId, liked) -> (liked ? added : removed).add(new Object[]{filmId, userId}));
+                films.add(new Object[]{filmId, filmId});
+            });
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbc.batchUpdate(MERGE_LIKE_QUERY, added);
+                jdbc.batchUpdate(DELETE_LIKE_QUERY, removed);
+                jdbc.batchUpdate(RECOUNT_LIKES_QUERY, films);
+                jdbc.batchUpdate(SYNC_GENRE_LIKE_COUNT_QUERY, films);
+            });
+            pending.clear();
+            deltas.clear();
+            size.set(0);
+            log.info("Записано {} лайков и {} снятий лайков у {} фильмов", added.size(), removed.size(), films.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+    }
+
+    private long enqueue(long filmId, long userId, boolean liked) {
+        if (size.get() >= capacity) {
+            log.warn("Буфер лайков заполнен ({} пар), запись выполняется в потоке запроса", size.get());
+            flush();
+        }
+        long likeCount;
+        lock.readLock().lock();
+        try {
+            LikeState state = findState(filmId, userId);
+            pending.computeIfAbsent(filmId, id -> new ConcurrentHashMap<>()).compute(userId, (id, desired) -> {
+                boolean current = desired != null ? desired : state.liked();
+                if (current == liked) {
+                    return desired;
+                }
+                deltas.merge(filmId, liked ? 1L : -1L, (a, b) -> a + b == 0 ? null : a + b);
+                if (desired == null) {
+                    size.incrementAndGet();
+                    return liked;
+                }
+                size.decrementAndGet();
+                return null;
+            });
+            likeCount = state.likeCount() + deltas.getOrDefault(filmId, 0L);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (size.get() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::scheduledFlush);
+        }
+        return likeCount;
+    }
+
+    private LikeState findState(long filmId, long userId) {
+        return jdbc.queryForObject(LIKE_STATE_QUERY, (rs, rowNum) -> {
+            long likeCount = rs.getLong(1);
+            if (rs.wasNull()) {
+                log.info("Фильм с id {} не найден", filmId);
+                throw new NotFoundException("Фильм с id " + filmId + " не найден");
+            }
+            if (!rs.getBoolean(2)) {
+                log.info("Пользователь с id {} не найден", userId);
+                throw new NotFoundException("Пользователь с id " + userId + " не найден");
+            }
+            return new LikeState(likeCount, rs.getBoolean(3));
+        }, filmId, userId, filmId, userId);
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать лайки из буфера, повтор при следующем сбросе", e);
+        }
+    }
+
+    private record LikeState(long likeCount, boolean liked) {
+    }
+}
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Фильмы, упорядоченные по количеству лайков. Изменение счетчика стоит O(log n),
+ * чтение первых N фильмов не требует сортировки всей коллекции.
+ * Изменения одного фильма выполняются последовательно, чтение идет без блокировок.
+ */
+public class PopularityIndex {
+    private static final Comparator<Score> ORDER = Comparator.comparingInt(Score::likes).reversed()
+            .thenComparingLong(Score::filmId);
+
+    private final NavigableSet<Score> ranking = new ConcurrentSkipListSet<>(ORDER);
+    private final Map<Long, Score> scores = new ConcurrentHashMap<>();
+
+    /**
+     * Размер likes читается под блокировкой записи фильма, поэтому последний вызов
+     * всегда видит все изменения, сделанные до него.
+     */
+    public void put(long filmId, Collection<Long> likes) {
+        scores.compute(filmId, (id, old) -> {
+            Score score = new Score(filmId, likes.size());
+            ranking.add(score);
+            if (old != null && !old.equals(score)) {
+                ranking.remove(old);
+            }
+            return score;
+        });
+    }
+
+    public void remove(long filmId) {
+        scores.computeIfPresent(filmId, (id, old) -> {
+            ranking.remove(old);
+            return null;
+        });
+    }
+
+    public List<Long> top(long count) {
+        return ranking.stream().map(Score::filmId).distinct().limit(count).toList();
+    }
+
+    private record Score(long filmId, int likes) {
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Genre;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Рейтинги популярности по сегментам: общий, по жанру, по году выпуска и по жанру и году. Фильм
+ * входит в сегменты своих жанров и года, лайк обновляет только их, а топ сегмента читается
+ * из его собственного PopularityIndex.
+ * Изменения одного фильма должны выполняться последовательно.
+ */
+public class SegmentedPopularityIndex {
+    private final PopularityIndex all = new PopularityIndex();
+    private final Map<Segment, PopularityIndex> segments = new ConcurrentHashMap<>();
+
+    public void put(Film film) {
+        all.put(film.getId(), film.getLikes());
+        segmentsOf(film).forEach(segment ->
+                segments.computeIfAbsent(segment, key -> new PopularityIndex()).put(film.getId(), film.getLikes()));
+    }
+
+    /**
+     * Переносит фильм из сегментов старой версии в сегменты новой, если изменились жанры или год.
+     */
+    public void replace(Film oldFilm, Film film) {
+        Set<Segment> current = segmentsOf(film);
+        segmentsOf(oldFilm).stream()
+                .filter(segment -> !current.contains(segment))
+                .map(segments::get)
+                .filter(Objects::nonNull)
+                .forEach(index -> index.remove(oldFilm.getId()));
+        put(film);
+    }
+
+    /**
+     * id самых популярных фильмов сегмента; genreId и year равны null, если по ним не фильтруют.
+     */
+    public List<Long> top(long count, Long genreId, Integer year) {
+        if (genreId == null && year == null) {
+            return all.top(count);
+        }
+        PopularityIndex index = segments.get(new Segment(genreId, year));
+        return index == null ? List.of() : index.top(count);
+    }
+
+    private static Set<Segment> segmentsOf(Film film) {
+        Set<Segment> result = new HashSet<>();
+        Integer year = film.getReleaseDate() == null ? null : film.getReleaseDate().getYear();
+        if (year != null) {
+            result.add(new Segment(null, year));
+        }
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                result.add(new Segment(genre.getId(), null));
+                if (year != null) {
+                    result.add(new Segment(genre.getId(), year));
+                }
+            }
+        }
+        return result;
+    }
+
+    private record Segment(Long genreId, Integer year) {
+    }
+}
@@ -1,22 +1,104 @@
 package ru.yandex.practicum.filmorate.storage.mappers;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FieldSet;
 import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Rating;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
 
 @Component
 public class FilmRowMapper implements RowMapper<Film> {
+    private static final Map<String, String> COLUMNS = new LinkedHashMap<>();
+
+    static {
+        COLUMNS.put("name", "name");
+        COLUMNS.put("description", "description");
+        COLUMNS.put("releaseDate", "release_date");
+        COLUMNS.put("duration", "duration");
+        COLUMNS.put("mpa", "rating_id");
+        COLUMNS.put("likeCount", "like_count");
+    }
+
+    private final ReferenceDataCache referenceData;
+
+    @Autowired
+    public FilmRowMapper(ReferenceDataCache referenceData) {
+        this.referenceData = referenceData;
+    }
+
     @Override
     public Film mapRow(ResultSet rs, int rowNum) throws SQLException {
-        return Film.builder()
+        Film film = Film.builder()
                 .id(rs.getLong("film_id"))
                 .name(rs.getString("name"))
                 .duration(rs.getInt("duration"))
                 .releaseDate(rs.getDate("release_date").toLocalDate())
                 .description(rs.getString("description"))
+                .mpa(mapRating(rs.getLong("rating_id")))
                 .build();
+        film.setLikeCount(rs.getLong("like_count"));
+        film.setVersion(rs.getLong("version"));
+        return film;
+    }
+
+    /**
+     * Колонки таблицы film с псевдонимом f для запрошенных полей; id и версия выбираются всегда.
+     */
+    public String columns(FieldSet fields) {
+        if (fields.isAll()) {
+            return "f.*";
+        }
+        StringJoiner columns = new StringJoiner(", ").add("f.film_id").add("f.version");
+        COLUMNS.forEach((field, column) -> {
+            if (fields.includes(field)) {
+                columns.add("f." + column);
+            }
+        });
+        return columns.toString();
+    }
+
+    /**
+     * Маппер строк, выбранных по columns(fields).
+     */
+    public RowMapper<Film> withFields(FieldSet fields) {
+        if (fields.isAll()) {
+            return this;
+        }
+        return (rs, rowNum) -> {
+            Film film = Film.builder().id(rs.getLong("film_id")).build();
+            if (fields.includes("name")) {
+                film.setName(rs.getString("name"));
+            }
+            if (fields.includes("description")) {
+                film.setDescription(rs.getString("description"));
+            }
+            if (fields.includes("releaseDate")) {
+                film.setReleaseDate(rs.getDate("release_date").toLocalDate());
+            }
+            if (fields.includes("duration")) {
+                film.setDuration(rs.getInt("duration"));
+            }
+            if (fields.includes("mpa")) {
+                film.setMpa(mapRating(rs.getLong("rating_id")));
+            }
+            if (fields.includes("likeCount")) {
+                film.setLikeCount(rs.getLong("like_count"));
+            }
+            film.setVersion(rs.getLong("version"));
+            return film;
+        };
+    }
+
+    private Rating mapRating(long ratingId) {
+        Rating rating = referenceData.getRating(ratingId);
+        return rating != null ? rating : new Rating(ratingId);
     }
 }
@@ -2,22 +2,83 @@ package ru.yandex.practicum.filmorate.storage.mappers;
 
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FieldSet;
 import ru.yandex.practicum.filmorate.model.user.User;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
 
 @Component
 public class UserRowMapper implements RowMapper<User> {
+    private static final Map<String, String> COLUMNS = new LinkedHashMap<>();
+
+    static {
+        COLUMNS.put("email", "email");
+        COLUMNS.put("login", "login");
+        COLUMNS.put("name", "name");
+        COLUMNS.put("birthday", "birthday");
+        COLUMNS.put("friendCount", "friend_count");
+    }
 
     @Override
     public User mapRow(ResultSet rs, int rowNum) throws SQLException {
-        return User.builder()
+        User user = User.builder()
                 .id(rs.getLong("user_id"))
                 .birthday(rs.getDate("birthday").toLocalDate())
                 .name(rs.getString("name"))
                 .login(rs.getString("login"))
                 .email(rs.getString("email"))
                 .build();
+        user.setFriendCount(rs.getLong("friend_count"));
+        user.setVersion(rs.getLong("version"));
+        return user;
+    }
+
+    /**
+     * Колонки таблицы users с псевдонимом u для запрошенных полей; id и версия выбираются всегда.
+     */
+    public String columns(FieldSet fields) {
+        if (fields.isAll()) {
+            return "u.*";
+        }
+        StringJoiner columns = new StringJoiner(", ").add("u.user_id").add("u.version");
+        COLUMNS.forEach((field, column) -> {
+            if (fields.includes(field)) {
+                columns.add("u." + column);
+            }
+        });
+        return columns.toString();
+    }
+
+    /**
+     * Маппер строк, выбранных по columns(fields).
+     */
+    public RowMapper<User> withFields(FieldSet fields) {
+        if (fields.isAll()) {
+            return this;
+        }
+        return (rs, rowNum) -> {
+            User user = User.builder().id(rs.getLong("user_id")).build();
+            if (fields.includes("email")) {
+                user.setEmail(rs.getString("email"));
+            }
+            if (fields.includes("login")) {
+                user.setLogin(rs.getString("login"));
+            }
+            if (fields.includes("name")) {
+                user.setName(rs.getString("name"));
+            }
+            if (fields.includes("birthday")) {
+                user.setBirthday(rs.getDate("birthday").toLocalDate());
+            }
+            if (fields.includes("friendCount")) {
+                user.setFriendCount(rs.getLong("friend_count"));
+            }
+            user.setVersion(rs.getLong("version"));
+            return user;
+        };
     }
 }
@@ -3,18 +3,19 @@ package ru.yandex.practicum.filmorate.storage.user;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.FieldSet;
 import ru.yandex.practicum.filmorate.model.user.User;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Component("inMemoryUserStorage")
 @Slf4j
 public class InMemoryUserStorage implements UserStorage {
-    private final Map<Long, User> users = new HashMap<>();
-    private int idCount = 0;
+    private final Map<Long, User> users = new ConcurrentHashMap<>();
+    private final AtomicLong idCount = new AtomicLong();
     private static final String INPUT_ERROR = "User Input Error";
 
     @Override
@@ -23,16 +24,62 @@ public class InMemoryUserStorage implements UserStorage {
         return users.values();
     }
 
+    @Override
+    public Collection<User> findAll(FieldSet fields) {
+        return findAll();
+    }
+
+    @Override
+    public Collection<User> findPage(long after, int limit, FieldSet fields) {
+        return findPage(after, limit);
+    }
+
+    @Override
+    public Collection<User> findPage(long after, int limit) {
+        List<User> page = new ArrayList<>();
+        for (long id = after + 1, last = idCount.get(); id <= last && page.size() < limit; id++) {
+            User user = users.get(id);
+            if (user != null) {
+                page.add(user);
+            }
+        }
+        log.info("Выполняется возврат {} пользователей после id {}", page.size(), after);
+        return page;
+    }
+
+    @Override
+    public void streamAll(Consumer<User> consumer) {
+        users.values().forEach(consumer);
+    }
+
     @Override
     public User findById(long id) {
-        if (users.containsKey(id)) {
-            log.info("Пользователь с id {} найден", id);
-            return users.get(id);
-        } else {
-            String message = "Пользователь с id " + id + " не найден";
-            log.error("{}: {}", INPUT_ERROR, message);
-            throw new NotFoundException(message);
+        User user = users.get(id);
+        if (user == null) {
+            throw notFound(id);
         }
+        log.info("Пользователь с id {} найден", id);
+        return user;
+    }
+
+    @Override
+    public long findVersion(long id) {
+        return findById(id).getVersion();
+    }
+
+    @Override
+    public User findById(long id, FieldSet fields) {
+        return findById(id);
+    }
+
+    @Override
+    public boolean exists(long id) {
+        return users.containsKey(id);
+    }
+
+    @Override
+    public boolean existsAll(Collection<Long> ids) {
+        return ids.stream().allMatch(users::containsKey);
     }
 
     @Override
@@ -41,66 +88,91 @@ public class InMemoryUserStorage implements UserStorage {
             user.setName(user.getLogin());
         }
 
-        user.setId(++idCount);
+        user.setId(idCount.incrementAndGet());
         users.put(user.getId(), user);
         log.info("Пользователь {} добавлен", user.getLogin());
         return user;
     }
 
     @Override
-    public User update(User user) {
-        if (!users.containsKey(user.getId())) {
-            String message = "Пользователь с id " + user.getId() + " не найден";
-            log.error("{}: {}", INPUT_ERROR, message);
-            throw new NotFoundException(message);
-        }
-
-        User oldUser = users.get(user.getId());
+    public List<Long> addAll(List<User> users) {
+        List<Long> ids = users.stream().map(user -> add(user).getId()).toList();
+        log.info("Добавлено пользователей: {}", ids.size());
+        return ids;
+    }
 
-        if (user.getName() == null) {
-            user.setName(oldUser.getName());
-        }
-        if (user.getEmail() == null) {
-            user.setEmail(oldUser.getEmail());
-        }
-        if (user.getBirthday() == null) {
-            user.setBirthday(oldUser.getBirthday());
-        }
-        if (user.getLogin() == null) {
-            user.setLogin(oldUser.getLogin());
-        }
-        if (user.getFriends() == null) {
+    @Override
+    public User update(User user) {
+        User updated = users.computeIfPresent(user.getId(), (id, oldUser) -> {
+            if (user.getName() == null) {
+                user.setName(oldUser.getName());
+            }
+            if (user.getEmail() == null) {
+                user.setEmail(oldUser.getEmail());
+            }
+            if (user.getBirthday() == null) {
+                user.setBirthday(oldUser.getBirthday());
+            }
+            if (user.getLogin() == null) {
+                user.setLogin(oldUser.getLogin());
+            }
             user.setFriends(oldUser.getFriends());
+            user.setFriendCount(oldUser.getFriendCount());
+            user.setVersion(oldUser.getVersion() + 1);
+            return user;
+        });
+        if (updated == null) {
+            throw notFound(user.getId());
         }
-
-        users.put(user.getId(), user);
         log.info("Пользователь с id {} обновлен: {}", user.getId(), user);
         return user;
     }
 
     @Override
     public User addFriend(long id, long friendId) {
+        addFriendship(id, friendId);
+        return findById(id);
+    }
+
+    public User deleteFriend(long id, long friendId) {
+        deleteFriendship(id, friendId);
+        return findById(id);
+    }
+
+    @Override
+    public void addFriendship(long id, long friendId) {
         User user = findById(id);
         User friend = findById(friendId);
-        user.getFriends().add(friendId);
-        friend.getFriends().add(id);
-
-        update(user);
-        update(friend);
+        if (user.getFriends().add(friendId)) {
+            friendsChanged(user);
+        }
+        if (friend.getFriends().add(id)) {
+            friendsChanged(friend);
+        }
         log.info("Пользователь {} добавил в друзья пользователя {}", user.getLogin(), friend.getLogin());
-        return user;
     }
 
-    public User deleteFriend(long id, long friendId) {
+    @Override
+    public void deleteFriendship(long id, long friendId) {
         User user = findById(id);
         User friend = findById(friendId);
-        user.getFriends().remove(friendId);
-        friend.getFriends().remove(id);
-
-        update(user);
-        update(friend);
+        if (user.getFriends().remove(friendId)) {
+            friendsChanged(user);
+        }
+        if (friend.getFriends().remove(id)) {
+            friendsChanged(friend);
+        }
         log.info("Пользователь {} удалил из друзей пользователя {}", user.getLogin(), friend.getLogin());
-        return user;
+    }
+
+    @Override
+    public List<Long> findFriendIds(long id, long after, int limit) {
+        return findById(id).getFriends().stream().filter(friendId -> friendId > after).limit(limit).toList();
+    }
+
+    @Override
+    public Collection<User> findFriends(long id, FieldSet fields) {
+        return findFriends(id);
     }
 
     public Collection<User> findFriends(long id) {
@@ -112,12 +184,29 @@ public class InMemoryUserStorage implements UserStorage {
     }
 
     public Collection<User> findMutuals(long id, long otherId) {
-        Collection<User> users = findAll();
         User user = findById(id);
         User otherUser = findById(otherId);
-        List<Long> mutualIds = user.getFriends().stream().filter(otherUser.getFriends()::contains).toList();
-        Collection<User> mutualFriends = users.stream().filter(curUser -> mutualIds.contains(curUser.getId())).toList();
+        Set<Long> smaller = user.getFriends().size() <= otherUser.getFriends().size() ? user.getFriends() : otherUser.getFriends();
+        Set<Long> larger = smaller == user.getFriends() ? otherUser.getFriends() : user.getFriends();
+        Collection<User> mutualFriends = smaller.stream()
+                .filter(larger::contains)
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .toList();
         log.info("Выполняется возврат общих друзей пользователей {} и {}", user.getLogin(), otherUser.getLogin());
         return mutualFriends;
     }
+
+    private NotFoundException notFound(long id) {
+        String message = "Пользователь с id " + id + " не найден";
+        log.error("{}: {}", INPUT_ERROR, message);
+        return new NotFoundException(message);
+    }
+
+    private void friendsChanged(User user) {
+        synchronized (user) {
+            user.setFriendCount(user.getFriends().size());
+            user.setVersion(user.getVersion() + 1);
+        }
+    }
 }
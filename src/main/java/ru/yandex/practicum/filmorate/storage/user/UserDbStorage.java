@@ -1,53 +1,139 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.exception.InternalErrorException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
-import ru.yandex.practicum.filmorate.model.user.FriendStatus;
+import ru.yandex.practicum.filmorate.model.FieldSet;
 import ru.yandex.practicum.filmorate.model.user.User;
-import ru.yandex.practicum.filmorate.storage.mappers.FriendStatusRowMapper;
+import ru.yandex.practicum.filmorate.storage.BatchInsertSupport;
 import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.util.CompactLongSet;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Repository("userDbStorage")
 @Slf4j
 public class  UserDbStorage implements UserStorage {
     private final JdbcTemplate jdbc;
     private final UserRowMapper userRowMapper;
-    private final FriendStatusRowMapper friendStatusRowMapper;
+    private final NamedParameterJdbcTemplate namedJdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate streamTransaction;
 
-    private static final String FIND_ALL_QUERY = "SELECT * FROM users";
-    private static final String FIND_BY_ID_QUERY = "SELECT * FROM users WHERE user_id = ?";
-    private static final String UPDATE_QUERY = "UPDATE users SET birthday = ?, name = ?, login = ?, email = ? WHERE user_id = ?";
-    private static final String ADD_FRIEND_QUERY = "INSERT INTO friend (user_id, second_user_id) VALUES (?, ?)";
+    private static final int BATCH_SIZE = 1000;
+    private static final String FIND_ALL_QUERY = "SELECT %s FROM users u";
+    private static final String FIND_ALL_ORDERED_QUERY = "SELECT * FROM users ORDER BY user_id";
+    private static final String FIND_PAGE_QUERY = FIND_ALL_QUERY + " WHERE u.user_id > ? ORDER BY u.user_id LIMIT ?";
+    private static final String FIND_BY_ID_QUERY = FIND_ALL_QUERY + " WHERE u.user_id = ?";
+    private static final String ADD_QUERY = "INSERT INTO users (birthday, name, login, email) VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_QUERY = "UPDATE users SET birthday = ?, name = ?, login = ?, email = ?, version = version + 1 WHERE user_id = ?";
+    private static final String ADD_FRIEND_QUERY = "INSERT INTO friend (user_id, second_user_id) SELECT ?, ? "
+            + "WHERE NOT EXISTS (SELECT 1 FROM friend WHERE user_id = ? AND second_user_id = ?)";
     private static final String DELETE_FRIEND_QUERY = "DELETE FROM friend WHERE user_id = ? AND second_user_id = ?";
-    private static final String FIND_FRIENDS_QUERY = "SELECT * FROM friend WHERE user_id = ?";
+    private static final String CHANGE_FRIEND_COUNT_QUERY = "UPDATE users SET friend_count = friend_count + ?, version = version + 1 WHERE user_id = ?";
+    private static final String FIND_FRIEND_IDS_PAGE_QUERY = "SELECT second_user_id FROM friend WHERE user_id = ? AND second_user_id > ? "
+            + "ORDER BY second_user_id LIMIT ?";
+    private static final String FIND_VERSION_QUERY = "SELECT version FROM users WHERE user_id = ?";
+    private static final String EXISTS_QUERY = "SELECT EXISTS (SELECT 1 FROM users WHERE user_id = ?)";
+    private static final String COUNT_BY_IDS_QUERY = "SELECT COUNT(*) FROM users WHERE user_id IN (:ids)";
+    private static final String FIND_FRIENDS_QUERY = "SELECT %s FROM friend f INNER JOIN users u ON u.user_id = f.second_user_id WHERE f.user_id = ? ORDER BY u.user_id";
+    private static final String FIND_FRIENDS_OF_FRIENDS_QUERY = "SELECT f2.user_id, f2.second_user_id FROM friend f1 INNER JOIN friend f2 ON f2.user_id = f1.second_user_id WHERE f1.user_id = ?";
+    private static final String FIND_ALL_FRIEND_IDS_QUERY = "SELECT user_id, second_user_id FROM friend ORDER BY user_id, second_user_id";
+    private static final String FIND_MUTUALS_QUERY = "SELECT u.* FROM users u WHERE u.user_id IN (SELECT f1.second_user_id FROM friend f1 "
+            + "INNER JOIN friend f2 ON f2.second_user_id = f1.second_user_id WHERE f1.user_id = ? AND f2.user_id = ?) ORDER BY u.user_id";
+    private static final String FIND_FRIEND_IDS_BY_USERS_QUERY = "SELECT user_id, second_user_id FROM friend WHERE user_id IN (:ids) "
+            + "ORDER BY user_id, second_user_id";
 
-    public UserDbStorage(JdbcTemplate jdbc, UserRowMapper userRowMapper, FriendStatusRowMapper friendStatusRowMapper) {
+    public UserDbStorage(JdbcTemplate jdbc, NamedParameterJdbcTemplate namedJdbc, PlatformTransactionManager transactionManager, UserRowMapper userRowMapper) {
         this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.streamTransaction = new TransactionTemplate(transactionManager);
+        this.streamTransaction.setReadOnly(true);
+        this.namedJdbc = namedJdbc;
         this.userRowMapper = userRowMapper;
-        this.friendStatusRowMapper = friendStatusRowMapper;
     }
 
     @Override
     public Collection<User> findAll() {
-        Collection<User> users = jdbc.query(FIND_ALL_QUERY, userRowMapper);
-        Collection<User> usersWithFriends = users.stream().peek(user -> user.setFriends(new HashSet<>(findFriends(user.getId()).stream().map(User::getId).toList()))).toList();
-        log.info("Выполняется возврат всех пользователей из БД");
-        return usersWithFriends;
+        return findAll(FieldSet.ALL);
+    }
+
+    @Override
+    public Collection<User> findAll(FieldSet fields) {
+        Map<Long, User> users = mapById(jdbc.query(FIND_ALL_QUERY.formatted(userRowMapper.columns(fields)),
+                userRowMapper.withFields(fields)));
+        if (fields.includes("friends")) {
+            jdbc.query(FIND_ALL_FRIEND_IDS_QUERY, friendIdsHandler(users));
+        }
+        log.info("Выполняется возврат всех пользователей из БД, поля: {}", fields);
+        return users.values();
+    }
+
+    @Override
+    public Collection<User> findPage(long after, int limit) {
+        return findPage(after, limit, FieldSet.ALL);
+    }
+
+    @Override
+    public Collection<User> findPage(long after, int limit, FieldSet fields) {
+        Map<Long, User> users = mapById(jdbc.query(FIND_PAGE_QUERY.formatted(userRowMapper.columns(fields)),
+                userRowMapper.withFields(fields), after, limit));
+        if (fields.includes("friends")) {
+            loadFriendIds(users);
+        }
+        log.info("Выполняется возврат {} пользователей после id {} из БД", users.size(), after);
+        return users.values();
+    }
+
+    @Override
+    public void streamAll(Consumer<User> consumer) {
+        Map<Long, User> chunk = new LinkedHashMap<>();
+        // Курсор и запросы друзей для каждой пачки идут в одной транзакции, то есть на одном соединении
+        streamTransaction.executeWithoutResult(status -> {
+            jdbc.query(con -> {
+                PreparedStatement ps = con.prepareStatement(FIND_ALL_ORDERED_QUERY, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(BATCH_SIZE);
+                return ps;
+            }, (RowCallbackHandler) rs -> {
+                User user = userRowMapper.mapRow(rs, rs.getRow());
+                chunk.put(user.getId(), user);
+                if (chunk.size() == BATCH_SIZE) {
+                    flushChunk(chunk, consumer);
+                }
+            });
+            flushChunk(chunk, consumer);
+        });
+        log.info("Выполнена потоковая выгрузка всех пользователей из БД");
     }
 
     @Override
     public User findById(long id) {
+        return findById(id, FieldSet.ALL);
+    }
+
+    @Override
+    public User findById(long id, FieldSet fields) {
         try {
-            User result = jdbc.queryForObject(FIND_BY_ID_QUERY, userRowMapper, id);
-            List<Long> friendsIds = jdbc.queryForList("SELECT SECOND_USER_ID FROM FRIEND WHERE user_id = ?", Long.class, id);
-            result.setFriends(new HashSet<>(friendsIds));
+            User result = jdbc.queryForObject(FIND_BY_ID_QUERY.formatted(userRowMapper.columns(fields)),
+                    userRowMapper.withFields(fields), id);
+            if (fields.includes("friends")) {
+                List<Long> friendsIds = jdbc.queryForList("SELECT SECOND_USER_ID FROM FRIEND WHERE user_id = ?", Long.class, id);
+                result.setFriends(new CompactLongSet(friendsIds));
+            }
             log.info("Выполняется возврат пользователя c id {} из БД", id);
             return result;
         } catch (EmptyResultDataAccessException e) {
@@ -56,10 +142,35 @@ public class  UserDbStorage implements UserStorage {
         }
     }
 
+    @Override
+    public long findVersion(long id) {
+        List<Long> versions = jdbc.queryForList(FIND_VERSION_QUERY, Long.class, id);
+        if (versions.isEmpty()) {
+            throw userNotFound(id);
+        }
+        return versions.getFirst();
+    }
+
+    @Override
+    public boolean exists(long id) {
+        return jdbc.queryForObject(EXISTS_QUERY, Boolean.class, id);
+    }
+
+    @Override
+    public boolean existsAll(Collection<Long> ids) {
+        Set<Long> distinct = new HashSet<>(ids);
+        if (distinct.isEmpty()) {
+            return true;
+        }
+        Long found = namedJdbc.queryForObject(COUNT_BY_IDS_QUERY, new MapSqlParameterSource("ids", distinct), Long.class);
+        return found != null && found == distinct.size();
+    }
+
     @Override
     public User add(User user) {
         SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbc)
                 .withTableName("users")
+                .usingColumns("email", "login", "name", "birthday")
                 .usingGeneratedKeyColumns("user_id");
         long id = simpleJdbcInsert.executeAndReturnKey(user.toMap()).longValue();
         if (id != 0) {
@@ -72,82 +183,163 @@ public class  UserDbStorage implements UserStorage {
     }
 
     @Override
-    public User update(User user) {
-        try {
-            findById(user.getId());
-            int rowsUpdated = jdbc.update(UPDATE_QUERY, user.getBirthday(), user.getName(), user.getLogin(), user.getEmail(), user.getId());
-            if (rowsUpdated == 0) {
-                throw new InternalErrorException("Не удалось обновить данные");
-            }
+    public List<Long> addAll(List<User> users) {
+        List<Long> ids = new ArrayList<>(users.size());
+        for (int from = 0; from < users.size(); from += BATCH_SIZE) {
+            List<User> chunk = users.subList(from, Math.min(from + BATCH_SIZE, users.size()));
+            ids.addAll(transactionTemplate.execute(status -> addChunk(chunk)));
+        }
+        log.info("Сохранено {} новых пользователей", ids.size());
+        return ids;
+    }
 
-            log.info("Информация о пользователе с id {} обновлена", user.getId());
-            return findById(user.getId());
-        } catch (EmptyResultDataAccessException e) {
+    private List<Long> addChunk(List<User> users) {
+        List<Long> ids = BatchInsertSupport.insertAndReturnKeys(jdbc, ADD_QUERY, "user_id", users, (ps, user) -> {
+            ps.setObject(1, user.getBirthday());
+            ps.setString(2, user.getName());
+            ps.setString(3, user.getLogin());
+            ps.setString(4, user.getEmail());
+        });
+        if (ids.size() != users.size()) {
+            log.error("Произошла ошибка на стороне сервера при попытке сохранить пользователей");
+            throw new InternalErrorException("Не удалось сохранить данные");
+        }
+        return ids;
+    }
+
+    @Override
+    public User update(User user) {
+        int rowsUpdated = jdbc.update(UPDATE_QUERY, user.getBirthday(), user.getName(), user.getLogin(), user.getEmail(), user.getId());
+        if (rowsUpdated == 0) {
             log.error("Пользователя с id {} еще нет", user.getId());
             throw new NotFoundException("Ошибка: Пользователь с id" + user.getId() + "не найден");
         }
+
+        log.info("Информация о пользователе с id {} обновлена", user.getId());
+        return findById(user.getId());
     }
 
     @Override
+    @Transactional
     public User addFriend(long id, long friendId) {
-        try {
-            findById(id);
-            findById(friendId);
-            jdbc.update(ADD_FRIEND_QUERY, id, friendId);
-            log.info("Пользователь с id {} добавил в друзья пользователя с id {}", id, friendId);
-            return findById(id);
-        } catch (EmptyResultDataAccessException e) {
-            log.error("Ошибка: не удалось сохранить данные");
-            throw new NotFoundException("Ошибка: не удалось сохранить данные");
-        }
+        addFriendship(id, friendId);
+        return findById(id);
     }
 
     @Override
+    @Transactional
     public User deleteFriend(long id, long friendId) {
+        deleteFriendship(id, friendId);
+        return findById(id);
+    }
+
+    @Override
+    @Transactional
+    public void addFriendship(long id, long friendId) {
+        checkFriendshipUsers(id, friendId);
+        if (insertFriend(id, friendId)) {
+            jdbc.update(CHANGE_FRIEND_COUNT_QUERY, 1, id);
+        }
+        log.info("Пользователь с id {} добавил в друзья пользователя с id {}", id, friendId);
+    }
+
+    /**
+     * NOT EXISTS не блокирует пару, поэтому одновременное добавление того же друга может упереться
+     * в первичный ключ friend: это тот же повторный запрос, и счетчик с версией не меняются.
+     */
+    private boolean insertFriend(long id, long friendId) {
         try {
-            findById(id);
-            findById(friendId);
-            jdbc.update(DELETE_FRIEND_QUERY, id, friendId);
-            log.info("Пользователь с id {} удалил из друзей пользователя с id {}", id, friendId);
-            return findById(id);
-        } catch (EmptyResultDataAccessException e) {
-            log.error("Ошибка: не удалось удалить данные");
-            throw new NotFoundException("Ошибка: не удалось удалить данные");
+            return jdbc.update(ADD_FRIEND_QUERY, id, friendId, id, friendId) > 0;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    @Override
+    @Transactional
+    public void deleteFriendship(long id, long friendId) {
+        checkFriendshipUsers(id, friendId);
+        if (jdbc.update(DELETE_FRIEND_QUERY, id, friendId) > 0) {
+            jdbc.update(CHANGE_FRIEND_COUNT_QUERY, -1, id);
         }
+        log.info("Пользователь с id {} удалил из друзей пользователя с id {}", id, friendId);
+    }
+
+    @Override
+    public List<Long> findFriendIds(long id, long after, int limit) {
+        List<Long> friendIds = jdbc.queryForList(FIND_FRIEND_IDS_PAGE_QUERY, Long.class, id, after, limit);
+        if (friendIds.isEmpty() && !exists(id)) {
+            throw userNotFound(id);
+        }
+        log.info("Выполняется возврат {} id друзей пользователя с id {} после id {}", friendIds.size(), id, after);
+        return friendIds;
     }
 
     @Override
     public Collection<User> findFriends(long id) {
-        try {
-            jdbc.queryForObject(FIND_BY_ID_QUERY, userRowMapper, id);
-            List<FriendStatus> friendsIds = jdbc.query(FIND_FRIENDS_QUERY, friendStatusRowMapper, id);
-            Collection<User> result = friendsIds.stream()
-                    .map(friendStatus -> findById(friendStatus.getFriendId()))
-                    .toList();
-            log.info("Выполняется возврат друзей пользователя с id {}", id);
-            return result;
-        } catch (EmptyResultDataAccessException e) {
+        return findFriends(id, FieldSet.ALL);
+    }
+
+    @Override
+    public Collection<User> findFriends(long id, FieldSet fields) {
+        Map<Long, User> friends = mapById(jdbc.query(FIND_FRIENDS_QUERY.formatted(userRowMapper.columns(fields)),
+                userRowMapper.withFields(fields), id));
+        if (friends.isEmpty() && !exists(id)) {
             log.error("Ошибка: не удалось найти данные");
             throw new NotFoundException("Ошибка: не удалось найти данные");
         }
+        if (fields.includes("friends")) {
+            jdbc.query(FIND_FRIENDS_OF_FRIENDS_QUERY, friendIdsHandler(friends), id);
+        }
+        log.info("Выполняется возврат друзей пользователя с id {}", id);
+        return friends.values();
     }
 
     @Override
     public Collection<User> findMutuals(long id, long otherId) {
-        List<FriendStatus> userFriendsIds = jdbc.query(FIND_FRIENDS_QUERY, friendStatusRowMapper, id);
-        List<FriendStatus> otherFriendsIds = jdbc.query(FIND_FRIENDS_QUERY, friendStatusRowMapper, otherId);
-
-        List<User> userFriends = userFriendsIds.stream()
-                .map(friendStatus -> findById(friendStatus.getFriendId()))
-                .toList();
-        List<User> otherFriends = otherFriendsIds.stream()
-                .map(friendStatus -> findById(friendStatus.getFriendId()))
-                .toList();
-
-        Collection<User> result = userFriends.stream()
-                .distinct()
-                .filter(otherFriends::contains)
-                .toList();
+        Map<Long, User> mutuals = mapById(jdbc.query(FIND_MUTUALS_QUERY, userRowMapper, id, otherId));
+        loadFriendIds(mutuals);
+        log.info("Выполняется возврат общих друзей пользователей с id {} и {}", id, otherId);
+        return mutuals.values();
+    }
+
+    private void flushChunk(Map<Long, User> chunk, Consumer<User> consumer) {
+        loadFriendIds(chunk);
+        chunk.values().forEach(consumer);
+        chunk.clear();
+    }
+
+    private void checkFriendshipUsers(long id, long friendId) {
+        if (!existsAll(List.of(id, friendId))) {
+            throw userNotFound(exists(id) ? friendId : id);
+        }
+    }
+
+    private NotFoundException userNotFound(long id) {
+        log.error("Пользователь с id {} не найден", id);
+        return new NotFoundException("Ошибка: Пользователь с id" + id + "не найден");
+    }
+
+    private Map<Long, User> mapById(List<User> users) {
+        Map<Long, User> result = new LinkedHashMap<>();
+        users.forEach(user -> result.put(user.getId(), user));
         return result;
     }
+
+    private void loadFriendIds(Map<Long, User> users) {
+        List<Long> ids = new ArrayList<>(users.keySet());
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            MapSqlParameterSource params = new MapSqlParameterSource("ids", ids.subList(from, Math.min(from + BATCH_SIZE, ids.size())));
+            namedJdbc.query(FIND_FRIEND_IDS_BY_USERS_QUERY, params, friendIdsHandler(users));
+        }
+    }
+
+    private RowCallbackHandler friendIdsHandler(Map<Long, User> users) {
+        return rs -> {
+            User user = users.get(rs.getLong("user_id"));
+            if (user != null) {
+                user.getFriends().add(rs.getLong("second_user_id"));
+            }
+        };
+    }
 }
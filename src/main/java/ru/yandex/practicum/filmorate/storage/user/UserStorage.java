@@ -1,23 +1,61 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import ru.yandex.practicum.filmorate.model.FieldSet;
 import ru.yandex.practicum.filmorate.model.user.User;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
 public interface UserStorage {
     Collection<User> findAll();
 
+    /**
+     * Пользователи только с запрошенными полями: незапрошенные колонки и друзья не читаются.
+     */
+    Collection<User> findAll(FieldSet fields);
+
+    Collection<User> findPage(long after, int limit);
+
+    Collection<User> findPage(long after, int limit, FieldSet fields);
+
+    void streamAll(Consumer<User> consumer);
+
     User findById(long id);
 
+    User findById(long id, FieldSet fields);
+
+    /**
+     * Версия пользователя, которая увеличивается при каждом изменении, в том числе при изменении списка друзей.
+     */
+    long findVersion(long id);
+
+    boolean exists(long id);
+
+    boolean existsAll(Collection<Long> ids);
+
     User add(User user);
 
+    List<Long> addAll(List<User> users);
+
     User update(User user);
 
     User addFriend(long id, long friendId);
 
     User deleteFriend(long id, long friendId);
 
+    void addFriendship(long id, long friendId);
+
+    void deleteFriendship(long id, long friendId);
+
+    /**
+     * Страница id друзей пользователя по возрастанию id после after.
+     */
+    List<Long> findFriendIds(long id, long after, int limit);
+
     Collection<User> findFriends(long id);
 
+    Collection<User> findFriends(long id, FieldSet fields);
+
     Collection<User> findMutuals(long id, long otherId);
 }
@@ -0,0 +1,312 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.*;
+
+/**
+ * Множество id в отсортированных блоках long[] до CHUNK_SIZE элементов: 8 байт на элемент вместо узла
+ * HashMap и объекта Long. Чтение идет без блокировок по опубликованному снимку. Добавление в конец
+ * выполняется в запас емкости последнего блока, вставка в середину и удаление копируют только один
+ * блок и массив ссылок на блоки, поэтому запись в набор из сотен тысяч id копирует единицы килобайт,
+ * а снимки, которые уже видят читатели, никогда не меняются.
+ */
+public class CompactLongSet extends AbstractSet<Long> {
+    static final int CHUNK_SIZE = 1024;
+    private static final long[][] NO_CHUNKS = new long[0][];
+    private static final int[] NO_SIZES = new int[0];
+
+    private volatile Snapshot snapshot = new Snapshot(NO_CHUNKS, NO_SIZES, 0);
+
+    public CompactLongSet() {
+    }
+
+    public CompactLongSet(Collection<Long> values) {
+        addAll(values);
+    }
+
+    /**
+     * Возвращает сам набор, если он уже компактный, иначе его копию.
+     */
+    public static CompactLongSet of(Collection<Long> values) {
+        if (values instanceof CompactLongSet compact) {
+            return compact;
+        }
+        return values == null ? new CompactLongSet() : new CompactLongSet(values);
+    }
+
+    @Override
+    public int size() {
+        return snapshot.size();
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return value instanceof Long id && contains(id.longValue());
+    }
+
+    public boolean contains(long value) {
+        Snapshot current = snapshot;
+        if (current.size() == 0) {
+            return false;
+        }
+        int chunk = current.chunkOf(value);
+        return Arrays.binarySearch(current.chunks()[chunk], 0, current.sizes()[chunk], value) >= 0;
+    }
+
+    @Override
+    public boolean add(Long value) {
+        return add(value.longValue());
+    }
+
+    public synchronized boolean add(long value) {
+        Snapshot current = snapshot;
+        if (current.size() == 0) {
+            snapshot = new Snapshot(new long[][]{{value}}, new int[]{1}, 1);
+            return true;
+        }
+        int chunk = current.chunkOf(value);
+        long[] values = current.chunks()[chunk];
+        int chunkSize = current.sizes()[chunk];
+        int index = Arrays.binarySearch(values, 0, chunkSize, value);
+        if (index >= 0) {
+            return false;
+        }
+        int position = -index - 1;
+        boolean last = chunk == current.chunks().length - 1;
+        if (last && position == chunkSize && chunkSize < CHUNK_SIZE) {
+            if (chunkSize == values.length) {
+                values = Arrays.copyOf(values, Math.min(capacity(chunkSize + 1), CHUNK_SIZE));
+            }
+            values[chunkSize] = value;
+            long[][] chunks = current.chunks();
+            if (values != chunks[chunk]) {
+                chunks = chunks.clone();
+                chunks[chunk] = values;
+            }
+            int[] sizes = current.sizes().clone();
+            sizes[chunk]++;
+            snapshot = new Snapshot(chunks, sizes, current.size() + 1);
+            return true;
+        }
+        if (last && position == chunkSize) {
+            // Последний блок заполнен: id растут, поэтому новый блок начинается без деления
+            int count = current.chunks().length;
+            long[][] chunks = Arrays.copyOf(current.chunks(), count + 1);
+            int[] sizes = Arrays.copyOf(current.sizes(), count + 1);
+            chunks[count] = new long[]{value};
+            sizes[count] = 1;
+            snapshot = new Snapshot(chunks, sizes, current.size() + 1);
+            return true;
+        }
+
+        long[] inserted = new long[chunkSize + 1];
+        System.arraycopy(values, 0, inserted, 0, position);
+        inserted[position] = value;
+        System.arraycopy(values, position, inserted, position + 1, chunkSize - position);
+        if (inserted.length <= CHUNK_SIZE) {
+            long[][] chunks = current.chunks().clone();
+            int[] sizes = current.sizes().clone();
+            chunks[chunk] = inserted;
+            sizes[chunk] = inserted.length;
+            snapshot = new Snapshot(chunks, sizes, current.size() + 1);
+            return true;
+        }
+        // Переполненный блок делится пополам
+        int half = inserted.length / 2;
+        int count = current.chunks().length;
+        long[][] chunks = new long[count + 1][];
+        int[] sizes = new int[count + 1];
+        System.arraycopy(current.chunks(), 0, chunks, 0, chunk);
+        System.arraycopy(current.sizes(), 0, sizes, 0, chunk);
+        chunks[chunk] = Arrays.copyOf(inserted, half);
+        sizes[chunk] = half;
+        chunks[chunk + 1] = Arrays.copyOfRange(inserted, half, inserted.length);
+        sizes[chunk + 1] = inserted.length - half;
+        System.arraycopy(current.chunks(), chunk + 1, chunks, chunk + 2, count - chunk - 1);
+        System.arraycopy(current.sizes(), chunk + 1, sizes, chunk + 2, count - chunk - 1);
+        snapshot = new Snapshot(chunks, sizes, current.size() + 1);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object value) {
+        return value instanceof Long id && remove(id.longValue());
+    }
+
+    public synchronized boolean remove(long value) {
+        Snapshot current = snapshot;
+        if (current.size() == 0) {
+            return false;
+        }
+        int chunk = current.chunkOf(value);
+        long[] values = current.chunks()[chunk];
+        int chunkSize = current.sizes()[chunk];
+        int position = Arrays.binarySearch(values, 0, chunkSize, value);
+        if (position < 0) {
+            return false;
+        }
+        if (chunkSize == 1) {
+            int count = current.chunks().length;
+            long[][] chunks = new long[count - 1][];
+            int[] sizes = new int[count - 1];
+            System.arraycopy(current.chunks(), 0, chunks, 0, chunk);
+            System.arraycopy(current.sizes(), 0, sizes, 0, chunk);
+            System.arraycopy(current.chunks(), chunk + 1, chunks, chunk, count - chunk - 1);
+            System.arraycopy(current.sizes(), chunk + 1, sizes, chunk, count - chunk - 1);
+            snapshot = new Snapshot(chunks, sizes, current.size() - 1);
+            return true;
+        }
+        long[] removed = new long[chunkSize - 1];
+        System.arraycopy(values, 0, removed, 0, position);
+        System.arraycopy(values, position + 1, removed, position, chunkSize - position - 1);
+        long[][] chunks = current.chunks().clone();
+        int[] sizes = current.sizes().clone();
+        chunks[chunk] = removed;
+        sizes[chunk] = removed.length;
+        snapshot = new Snapshot(chunks, sizes, current.size() - 1);
+        return true;
+    }
+
+    /**
+     * Добавляет все значения за одно слияние отсортированных массивов.
+     */
+    @Override
+    public synchronized boolean addAll(Collection<? extends Long> collection) {
+        long[] added = sortedDistinct(collection);
+        if (added.length == 0) {
+            return false;
+        }
+        long[] existing = toLongArray();
+        long[] merged = new long[existing.length + added.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < existing.length || j < added.length) {
+            long next;
+            if (j == added.length || i < existing.length && existing[i] <= added[j]) {
+                next = existing[i++];
+                if (j < added.length && added[j] == next) {
+                    j++;
+                }
+            } else {
+                next = added[j++];
+            }
+            merged[size++] = next;
+        }
+        if (size == existing.length) {
+            return false;
+        }
+        snapshot = Snapshot.of(merged, size);
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        snapshot = new Snapshot(NO_CHUNKS, NO_SIZES, 0);
+    }
+
+    public long[] toLongArray() {
+        Snapshot current = snapshot;
+        long[] result = new long[current.size()];
+        int offset = 0;
+        for (int chunk = 0; chunk < current.chunks().length; chunk++) {
+            System.arraycopy(current.chunks()[chunk], 0, result, offset, current.sizes()[chunk]);
+            offset += current.sizes()[chunk];
+        }
+        return result;
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        Snapshot current = snapshot;
+        return new Iterator<>() {
+            private int chunk;
+            private int next;
+            private long last;
+            private boolean canRemove;
+
+            @Override
+            public boolean hasNext() {
+                return chunk < current.chunks().length;
+            }
+
+            @Override
+            public Long next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                last = current.chunks()[chunk][next++];
+                if (next == current.sizes()[chunk]) {
+                    chunk++;
+                    next = 0;
+                }
+                canRemove = true;
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (!canRemove) {
+                    throw new IllegalStateException();
+                }
+                canRemove = false;
+                CompactLongSet.this.remove(last);
+            }
+        };
+    }
+
+    private static long[] sortedDistinct(Collection<? extends Long> collection) {
+        Object[] boxed = collection.toArray();
+        long[] values = new long[boxed.length];
+        int size = 0;
+        for (Object value : boxed) {
+            values[size++] = (Long) value;
+        }
+        Arrays.sort(values, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || values[distinct - 1] != values[i]) {
+                values[distinct++] = values[i];
+            }
+        }
+        return distinct == values.length ? values : Arrays.copyOf(values, distinct);
+    }
+
+    private static int capacity(int needed) {
+        return Math.max(needed, needed + (needed >> 1));
+    }
+
+    /**
+     * Блоки по возрастанию значений; sizes хранит заполненную часть каждого блока, у последнего
+     * блока массив может быть длиннее.
+     */
+    private record Snapshot(long[][] chunks, int[] sizes, int size) {
+        static Snapshot of(long[] values, int size) {
+            int count = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            long[][] chunks = new long[count][];
+            int[] sizes = new int[count];
+            for (int chunk = 0; chunk < count; chunk++) {
+                int from = chunk * CHUNK_SIZE;
+                chunks[chunk] = Arrays.copyOfRange(values, from, Math.min(from + CHUNK_SIZE, size));
+                sizes[chunk] = chunks[chunk].length;
+            }
+            return new Snapshot(chunks, sizes, size);
+        }
+
+        /**
+         * Блок, в котором лежит или должно лежать значение: последний блок с первым элементом не больше value.
+         */
+        int chunkOf(long value) {
+            int low = 0;
+            int high = chunks.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (chunks[middle][0] <= value) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package ru.yandex.practicum.filmorate.util;
+
+/**
+ * Хеш-таблица long -> int с открытой адресацией на двух примитивных массивах, без упаковки ключей
+ * и узлов. Ключ 0 служит признаком пустой ячейки, поэтому не поддерживается (id начинаются с 1).
+ * Не потокобезопасна.
+ */
+public class LongIntHashMap {
+    private static final int MIN_CAPACITY = 4;
+    private static final double LOAD_FACTOR = 0.6;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    public LongIntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = tableSize(expectedSize);
+        keys = new long[capacity];
+        values = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return key != 0 && keys[find(key)] == key;
+    }
+
+    /**
+     * Значение по ключу или missing, если ключа нет.
+     */
+    public int get(long key, int missing) {
+        if (key == 0) {
+            return missing;
+        }
+        int slot = find(key);
+        return keys[slot] == key ? values[slot] : missing;
+    }
+
+    public int get(long key) {
+        return get(key, 0);
+    }
+
+    public void put(long key, int value) {
+        checkKey(key);
+        int slot = find(key);
+        if (keys[slot] == key) {
+            values[slot] = value;
+            return;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (size > keys.length * LOAD_FACTOR) {
+            resize(keys.length * 2);
+        }
+    }
+
+    /**
+     * Прибавляет delta к значению (отсутствующее считается нулем) и удаляет ключ, если сумма стала нулем.
+     *
+     * @return новое значение
+     */
+    public int addTo(long key, int delta) {
+        checkKey(key);
+        int slot = find(key);
+        if (keys[slot] != key) {
+            if (delta != 0) {
+                put(key, delta);
+            }
+            return delta;
+        }
+        int value = values[slot] + delta;
+        if (value == 0) {
+            removeSlot(slot);
+        } else {
+            values[slot] = value;
+        }
+        return value;
+    }
+
+    public boolean remove(long key) {
+        if (key == 0) {
+            return false;
+        }
+        int slot = find(key);
+        if (keys[slot] != key) {
+            return false;
+        }
+        removeSlot(slot);
+        return true;
+    }
+
+    public void forEach(Consumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Consumer {
+        void accept(long key, int value);
+    }
+
+    /**
+     * Ячейка с ключом или первая пустая ячейка цепочки, в которую его можно вставить.
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Удаление со сдвигом: следующие элементы цепочки переносятся на освободившееся место,
+     * чтобы поиск не обрывался на пустой ячейке.
+     */
+    private void removeSlot(int slot) {
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != 0) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != 0) {
+                int target = find(oldKeys[slot]);
+                keys[target] = oldKeys[slot];
+                values[target] = oldValues[slot];
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        forEach((key, value) -> builder.append(builder.length() > 1 ? ", " : "").append(key).append('=').append(value));
+        return builder.append('}').toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LongIntHashMap other) || other.size != size) {
+            return false;
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0 && (!other.containsKey(keys[slot]) || other.get(keys[slot]) != values[slot])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                hash += Long.hashCode(keys[slot]) ^ values[slot];
+            }
+        }
+        return hash;
+    }
+
+    private static void checkKey(long key) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Ключ 0 не поддерживается");
+        }
+    }
+
+    private static int hash(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+
+    private static int tableSize(int expectedSize) {
+        int capacity = Integer.highestOneBit((int) Math.max(MIN_CAPACITY, expectedSize / LOAD_FACTOR) - 1) << 1;
+        return Math.max(MIN_CAPACITY, capacity);
+    }
+}
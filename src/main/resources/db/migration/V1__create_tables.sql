@@ -39,4 +39,4 @@ CREATE TABLE IF NOT EXISTS friend (
     user_id integer,
     second_user_id integer,
     confirmed boolean
-);
\ No newline at end of file
+);
@@ -4,4 +4,4 @@ MERGE INTO GENRE
 
 MERGE INTO RATING
     KEY(RATING_ID)
-    VALUES (1,  'G' ), (2, 'PG'), (3, 'PG-13'), (4, 'R'), (5, 'NC-17');
\ No newline at end of file
+    VALUES (1,  'G' ), (2, 'PG'), (3, 'PG-13'), (4, 'R'), (5, 'NC-17');
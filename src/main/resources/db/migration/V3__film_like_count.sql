@@ -0,0 +1,6 @@
+ALTER TABLE film ADD COLUMN IF NOT EXISTS like_count integer DEFAULT 0 NOT NULL;
+CREATE INDEX IF NOT EXISTS film_like_count_idx ON film (like_count DESC, film_id);
+
+MERGE INTO film f
+    USING (SELECT film_id, COUNT(*) AS likes FROM likes GROUP BY film_id) l ON f.film_id = l.film_id
+    WHEN MATCHED THEN UPDATE SET like_count = l.likes;
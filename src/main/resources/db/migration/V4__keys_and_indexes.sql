@@ -0,0 +1,69 @@
+-- Одноразовая очистка: строки с пустыми ссылками, ссылками на несуществующие записи и дубликаты
+DELETE FROM genre WHERE genre_id IS NULL;
+DELETE FROM genre WHERE _ROWID_ NOT IN (SELECT MIN(_ROWID_) FROM genre GROUP BY genre_id);
+DELETE FROM rating WHERE rating_id IS NULL;
+DELETE FROM rating WHERE _ROWID_ NOT IN (SELECT MIN(_ROWID_) FROM rating GROUP BY rating_id);
+
+CREATE TABLE likes_clean AS SELECT DISTINCT l.film_id, l.user_id FROM likes l
+    WHERE EXISTS (SELECT 1 FROM film f WHERE f.film_id = l.film_id)
+    AND EXISTS (SELECT 1 FROM users u WHERE u.user_id = l.user_id);
+TRUNCATE TABLE likes;
+INSERT INTO likes (film_id, user_id) SELECT film_id, user_id FROM likes_clean;
+DROP TABLE likes_clean;
+
+CREATE TABLE friend_clean AS SELECT fr.user_id, fr.second_user_id, MAX(fr.confirmed) AS confirmed FROM friend fr
+    WHERE EXISTS (SELECT 1 FROM users u WHERE u.user_id = fr.user_id)
+    AND EXISTS (SELECT 1 FROM users u WHERE u.user_id = fr.second_user_id)
+    GROUP BY fr.user_id, fr.second_user_id;
+TRUNCATE TABLE friend;
+INSERT INTO friend (user_id, second_user_id, confirmed) SELECT user_id, second_user_id, confirmed FROM friend_clean;
+DROP TABLE friend_clean;
+
+CREATE TABLE film_genre_clean AS SELECT DISTINCT fg.film_id, fg.genre_id FROM film_genre fg
+    WHERE EXISTS (SELECT 1 FROM film f WHERE f.film_id = fg.film_id)
+    AND EXISTS (SELECT 1 FROM genre g WHERE g.genre_id = fg.genre_id);
+TRUNCATE TABLE film_genre;
+INSERT INTO film_genre (film_id, genre_id) SELECT film_id, genre_id FROM film_genre_clean;
+DROP TABLE film_genre_clean;
+
+UPDATE film SET rating_id = NULL WHERE rating_id NOT IN (SELECT rating_id FROM rating);
+
+-- Справочники
+ALTER TABLE genre ALTER COLUMN genre_id SET NOT NULL;
+ALTER TABLE genre ADD CONSTRAINT genre_pk PRIMARY KEY (genre_id);
+ALTER TABLE rating ALTER COLUMN rating_id SET NOT NULL;
+ALTER TABLE rating ADD CONSTRAINT rating_pk PRIMARY KEY (rating_id);
+
+ALTER TABLE film ALTER COLUMN rating_id SET DEFAULT NULL;
+CREATE INDEX film_rating_idx ON film (rating_id);
+ALTER TABLE film ADD CONSTRAINT film_rating_fk FOREIGN KEY (rating_id) REFERENCES rating (rating_id);
+
+-- Лайки: поиск по фильму идет по первичному ключу, поиск по пользователю - по обратному индексу
+ALTER TABLE likes ALTER COLUMN film_id SET NOT NULL;
+ALTER TABLE likes ALTER COLUMN user_id SET NOT NULL;
+ALTER TABLE likes ADD CONSTRAINT likes_pk PRIMARY KEY (film_id, user_id);
+CREATE INDEX likes_user_film_idx ON likes (user_id, film_id);
+ALTER TABLE likes ADD CONSTRAINT likes_film_fk FOREIGN KEY (film_id) REFERENCES film (film_id) ON DELETE CASCADE;
+ALTER TABLE likes ADD CONSTRAINT likes_user_fk FOREIGN KEY (user_id) REFERENCES users (user_id) ON DELETE CASCADE;
+
+-- Дружба
+ALTER TABLE friend ALTER COLUMN user_id SET NOT NULL;
+ALTER TABLE friend ALTER COLUMN second_user_id SET NOT NULL;
+ALTER TABLE friend ADD CONSTRAINT friend_pk PRIMARY KEY (user_id, second_user_id);
+CREATE INDEX friend_second_user_idx ON friend (second_user_id, user_id);
+ALTER TABLE friend ADD CONSTRAINT friend_user_fk FOREIGN KEY (user_id) REFERENCES users (user_id) ON DELETE CASCADE;
+ALTER TABLE friend ADD CONSTRAINT friend_second_user_fk FOREIGN KEY (second_user_id) REFERENCES users (user_id) ON DELETE CASCADE;
+
+-- Жанры фильмов
+ALTER TABLE film_genre ALTER COLUMN film_id SET NOT NULL;
+ALTER TABLE film_genre ALTER COLUMN genre_id SET NOT NULL;
+ALTER TABLE film_genre ADD CONSTRAINT film_genre_pk PRIMARY KEY (film_id, genre_id);
+CREATE INDEX film_genre_genre_film_idx ON film_genre (genre_id, film_id);
+ALTER TABLE film_genre ADD CONSTRAINT film_genre_film_fk FOREIGN KEY (film_id) REFERENCES film (film_id) ON DELETE CASCADE;
+ALTER TABLE film_genre ADD CONSTRAINT film_genre_genre_fk FOREIGN KEY (genre_id) REFERENCES genre (genre_id);
+
+-- Счетчики лайков пересчитываются после удаления дубликатов
+UPDATE film SET like_count = 0;
+MERGE INTO film f
+    USING (SELECT film_id, COUNT(*) AS likes FROM likes GROUP BY film_id) l ON f.film_id = l.film_id
+    WHEN MATCHED THEN UPDATE SET like_count = l.likes;
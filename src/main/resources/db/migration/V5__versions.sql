@@ -0,0 +1,2 @@
+ALTER TABLE film ADD COLUMN IF NOT EXISTS version bigint DEFAULT 1 NOT NULL;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS version bigint DEFAULT 1 NOT NULL;
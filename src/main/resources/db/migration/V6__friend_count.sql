@@ -0,0 +1,5 @@
+ALTER TABLE users ADD COLUMN IF NOT EXISTS friend_count integer DEFAULT 0 NOT NULL;
+
+MERGE INTO users u
+    USING (SELECT user_id, COUNT(*) AS friends FROM friend GROUP BY user_id) f ON u.user_id = f.user_id
+    WHEN MATCHED THEN UPDATE SET friend_count = f.friends;
@@ -0,0 +1,12 @@
+-- Топ по году выпуска читается по индексу без сортировки
+ALTER TABLE film ADD COLUMN IF NOT EXISTS release_year integer GENERATED ALWAYS AS (EXTRACT(YEAR FROM release_date));
+CREATE INDEX IF NOT EXISTS film_year_like_count_idx ON film (release_year, like_count DESC, film_id);
+
+-- Топ по жанру: счетчик лайков и год копируются в film_genre, чтобы сегмент жанра был упорядочен индексом
+ALTER TABLE film_genre ADD COLUMN IF NOT EXISTS release_year integer;
+ALTER TABLE film_genre ADD COLUMN IF NOT EXISTS like_count integer DEFAULT 0 NOT NULL;
+MERGE INTO film_genre fg
+    USING film f ON fg.film_id = f.film_id
+    WHEN MATCHED THEN UPDATE SET release_year = f.release_year, like_count = f.like_count;
+CREATE INDEX IF NOT EXISTS film_genre_like_count_idx ON film_genre (genre_id, like_count DESC, film_id);
+CREATE INDEX IF NOT EXISTS film_genre_year_like_count_idx ON film_genre (genre_id, release_year, like_count DESC, film_id);
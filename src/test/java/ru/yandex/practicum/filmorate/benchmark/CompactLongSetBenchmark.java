@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.util.CompactLongSet;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лайк и снятие лайка у популярного фильма: набор из size id через один, запись попадает в середину.
+ * Стоимость записи ограничена копированием одного блока и массива ссылок на блоки, а не всего набора.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class CompactLongSetBenchmark {
+    @Param({"1000", "300000"})
+    private int size;
+
+    private CompactLongSet set;
+    private SplittableRandom random;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        set = new CompactLongSet();
+        for (long id = 0; id < size; id++) {
+            set.add(id * 2);
+        }
+        random = new SplittableRandom(42);
+    }
+
+    @Benchmark
+    public boolean likeAndUnlike() {
+        long id = random.nextLong(size) * 2 + 1;
+        set.add(id);
+        return set.remove(id);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return set.contains(random.nextLong(size * 2L));
+    }
+}
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import ru.yandex.practicum.filmorate.model.film.Film;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции FilmStorage на БД и в памяти. Запуск: mvn -Pbenchmark -DskipTests verify
+ * (фильтр и параметры JMH передаются через -Djmh.args="...").
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FilmStorageBenchmark {
+    private static final int POPULAR_COUNT = 10;
+
+    @Benchmark
+    public Collection<Film> findAll(StorageState state, QueryCounter counter) {
+        counter.start();
+        Collection<Film> films = state.films.findAll();
+        counter.stop();
+        return films;
+    }
+
+    @Benchmark
+    public Film findById(StorageState state, QueryCounter counter) {
+        long id = counter.randomId(state);
+        counter.start();
+        Film film = state.films.findById(id);
+        counter.stop();
+        return film;
+    }
+
+    @Benchmark
+    public Collection<Film> findPopular(StorageState state, QueryCounter counter) {
+        counter.start();
+        Collection<Film> films = state.films.findPopular(POPULAR_COUNT);
+        counter.stop();
+        return films;
+    }
+
+    /**
+     * Лайк и его снятие пользователем потока, чтобы набор данных не менялся между итерациями.
+     */
+    @Benchmark
+    public Film like(StorageState state, QueryCounter counter) {
+        long id = counter.randomId(state);
+        long userId = counter.likerId();
+        counter.start();
+        Film film = state.films.like(id, userId);
+        state.films.removeLike(id, userId);
+        counter.stop();
+        return film;
+    }
+
+    @Benchmark
+    public long addLike(StorageState state, QueryCounter counter) {
+        long id = counter.randomId(state);
+        long userId = counter.likerId();
+        counter.start();
+        long likes = state.films.addLike(id, userId);
+        state.films.deleteLike(id, userId);
+        counter.stop();
+        return likes;
+    }
+}
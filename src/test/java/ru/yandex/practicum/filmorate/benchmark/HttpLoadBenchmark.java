@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузочный тест HTTP API: каждая операция - пачка из concurrency одновременных GET-запросов
+ * к фильмам, популярному и друзьям. Сравнивает обработку запросов на пуле платформенных потоков
+ * Tomcat и на виртуальных потоках; requests - успешные запросы в секунду.
+ * Запуск: mvn -Pbenchmark -DskipTests verify -Djmh.args="HttpLoadBenchmark -f 1 -wi 2 -i 3"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HttpLoadBenchmark {
+    private static final int SIZE = 1000;
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        @Param({"platform", "virtual"})
+        public String threads;
+
+        @Param({"100", "1000"})
+        public int concurrency;
+
+        private ConfigurableApplicationContext context;
+        private ExecutorService executor;
+        private HttpClient client;
+        private String baseUrl;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            context = new SpringApplicationBuilder(FilmorateApplication.class)
+                    .run("--spring.datasource.url=jdbc:h2:mem:load" + System.nanoTime() + ";DB_CLOSE_DELAY=-1",
+                            "--spring.threads.virtual.enabled=" + "virtual".equals(threads),
+                            "--server.port=0",
+                            "--logging.level.root=warn");
+            StorageState.seed(context.getBean(FilmDbStorage.class), context.getBean(UserDbStorage.class), SIZE);
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            executor = Executors.newVirtualThreadPerTaskExecutor();
+            client = HttpClient.newBuilder().executor(executor).build();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            client.close();
+            executor.shutdownNow();
+            context.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Requests {
+        public long requests;
+        public long failures;
+
+        private final Random random = new Random(7);
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            requests = 0;
+            failures = 0;
+        }
+    }
+
+    @Benchmark
+    public void mixedReads(Server server, Requests counter) {
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(server.concurrency);
+        for (int i = 0; i < server.concurrency; i++) {
+            long id = 1 + counter.random.nextInt(SIZE);
+            String path = switch (i % 3) {
+                case 0 -> "/films/" + id;
+                case 1 -> "/users/" + id + "/friends";
+                default -> "/films/popular?count=10";
+            };
+            HttpRequest request = HttpRequest.newBuilder(URI.create(server.baseUrl + path)).GET().build();
+            responses.add(server.client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            if (response.join().statusCode() == 200) {
+                counter.requests++;
+            } else {
+                counter.failures++;
+            }
+        }
+    }
+}
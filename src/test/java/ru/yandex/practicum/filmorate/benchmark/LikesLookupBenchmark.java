@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.h2.tools.RunScript;
+
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+/**
+ * Сравнивает стоимость поиска лайков по фильму и по пользователю
+ * до и после миграции V4 (ключи и индексы) на 1 000 000 лайков.
+ * Запуск: main-метод из тестового classpath, аргумент - количество лайков.
+ */
+public class LikesLookupBenchmark {
+    private static final int FILMS = 10_000;
+    private static final int LIKES_PER_USER = 10;
+    private static final int LOOKUPS = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        int likes = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        try (Connection con = DriverManager.getConnection("jdbc:h2:mem:likes_benchmark;DB_CLOSE_DELAY=-1", "sa", "")) {
+            runScript(con, "V1__create_tables.sql");
+            runScript(con, "V2__reference_data.sql");
+            runScript(con, "V3__film_like_count.sql");
+            long start = System.nanoTime();
+            seed(con, likes);
+            System.out.printf("Заполнение: %d мс%n", (System.nanoTime() - start) / 1_000_000);
+
+            System.out.printf("Лайков: %d%n", likes);
+            report(con, "без индексов", likes);
+            start = System.nanoTime();
+            runScript(con, "V4__keys_and_indexes.sql");
+            System.out.printf("Миграция V4: %d мс%n", (System.nanoTime() - start) / 1_000_000);
+            report(con, "после V4", likes);
+        }
+    }
+
+    private static void runScript(Connection con, String name) throws SQLException {
+        RunScript.execute(con, new InputStreamReader(
+                LikesLookupBenchmark.class.getResourceAsStream("/db/migration/" + name), StandardCharsets.UTF_8));
+    }
+
+    private static void seed(Connection con, int likes) throws SQLException {
+        int users = likes / LIKES_PER_USER;
+        try (Statement st = con.createStatement()) {
+            st.execute("INSERT INTO film (duration, release_date, description, name, rating_id) "
+                    + "SELECT 100, DATE '2000-01-01', 'desc', 'film' || X, MOD(X, 5) + 1 FROM SYSTEM_RANGE(1, " + FILMS + ")");
+            st.execute("INSERT INTO users (birthday, name, login, email) "
+                    + "SELECT DATE '2000-01-01', 'user' || X, 'user' || X, 'user' || X || '@mail.ru' FROM SYSTEM_RANGE(1, " + users + ")");
+            st.execute("INSERT INTO likes (film_id, user_id) "
+                    + "SELECT MOD(X * 7919, " + FILMS + ") + 1, X / " + LIKES_PER_USER + " + 1 FROM SYSTEM_RANGE(0, " + (likes - 1) + ")");
+        }
+    }
+
+    private static void report(Connection con, String title, int likes) throws SQLException {
+        int users = likes / LIKES_PER_USER;
+        double byFilm = measure(con, "SELECT user_id FROM likes WHERE film_id = ?", FILMS);
+        double byUser = measure(con, "SELECT film_id FROM likes WHERE user_id = ?", users);
+        double pair = measure(con, "SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?", FILMS);
+        System.out.printf("%-14s по фильму: %10.1f мкс, по пользователю: %10.1f мкс, пара: %10.1f мкс%n",
+                title, byFilm, byUser, pair);
+    }
+
+    private static double measure(Connection con, String sql, int maxId) throws SQLException {
+        Random random = new Random(42);
+        int params = (int) sql.chars().filter(ch -> ch == '?').count();
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                for (int p = 1; p <= params; p++) {
+                    ps.setInt(p, random.nextInt(maxId) + 1);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        rs.getInt(1);
+                    }
+                }
+            }
+            return (System.nanoTime() - start) / 1_000.0 / LOOKUPS;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import ru.yandex.practicum.filmorate.monitoring.QueryStats;
+
+import java.util.Random;
+
+/**
+ * Состояние потока бенчмарка: генератор id, собственный пользователь для лайков и счетчик
+ * SQL-запросов на одну операцию. Запросы считаются через QueryStats текущего потока, поэтому
+ * при нескольких потоках JMH операции одного потока не попадают в счетчик другого.
+ * Значение queriesPerOp выводится JMH рядом с ops/s.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class QueryCounter {
+    public double queriesPerOp;
+
+    private final Random random = new Random(7);
+    private long likerId;
+    private int threads;
+    private long operations;
+    private long queries;
+    private QueryStats stats;
+
+    /**
+     * Пользователь без лайков в исходных данных: лайк и его снятие от его имени не трогают
+     * лайки набора данных, а другие потоки не лайкают от его имени.
+     */
+    @Setup(Level.Trial)
+    public void setUp(StorageState state, BenchmarkParams params) {
+        likerId = state.addLiker();
+        threads = params.getThreads();
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        operations = 0;
+        queries = 0;
+        queriesPerOp = 0;
+    }
+
+    long randomId(StorageState state) {
+        return state.randomId(random);
+    }
+
+    long likerId() {
+        return likerId;
+    }
+
+    void start() {
+        stats = QueryStats.start();
+    }
+
+    void stop() {
+        QueryStats.stop();
+        operations++;
+        queries += stats.getQueries();
+        // JMH складывает счетчики EVENTS всех потоков, поэтому сумма дает среднее по потокам
+        queriesPerOp = (double) queries / operations / threads;
+    }
+}
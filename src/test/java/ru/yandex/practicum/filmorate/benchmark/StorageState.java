@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Rating;
+import ru.yandex.practicum.filmorate.model.user.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Общее состояние бенчмарков: контекст приложения на встроенной H2 и хранилища,
+ * заполненные детерминированным набором данных заданного размера.
+ */
+@State(Scope.Benchmark)
+public class StorageState {
+    private static final long SEED = 42;
+    private static final int LIKES_PER_USER = 5;
+    private static final int FRIENDS_PER_USER = 5;
+
+    @Param({"1000", "10000"})
+    public int size;
+
+    @Param({"db", "memory"})
+    public String backend;
+
+    public FilmStorage films;
+    public UserStorage users;
+
+    private ConfigurableApplicationContext context;
+    private int likers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark" + System.nanoTime() + ";DB_CLOSE_DELAY=-1",
+                        "--logging.level.root=warn");
+        if ("db".equals(backend)) {
+            users = context.getBean(UserDbStorage.class);
+            films = context.getBean(FilmDbStorage.class);
+        } else {
+            users = new InMemoryUserStorage();
+            films = new InMemoryFilmStorage(new UserService(users, context.getBean(Validator.class)));
+        }
+        seed(films, users, size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Добавляет пользователя вне исходного набора данных, от имени которого лайкает один поток бенчмарка.
+     */
+    public synchronized long addLiker() {
+        int number = likers++;
+        return users.add(User.builder()
+                .email("liker" + number + "@mail.ru")
+                .login("liker" + number)
+                .name("liker" + number)
+                .birthday(LocalDate.of(1970, 1, 1))
+                .build()).getId();
+    }
+
+    static void seed(FilmStorage films, UserStorage users, int size) {
+        Random random = new Random(SEED);
+        List<User> userList = new ArrayList<>(size);
+        List<Film> filmList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            userList.add(User.builder()
+                    .email("user" + i + "@mail.ru")
+                    .login("user" + i)
+                    .name("user" + i)
+                    .birthday(LocalDate.of(1970, 1, 1).plusDays(random.nextInt(15_000)))
+                    .build());
+            filmList.add(Film.builder()
+                    .name("film" + i)
+                    .description("description " + i)
+                    .duration(60 + random.nextInt(120))
+                    .releaseDate(LocalDate.of(1950, 1, 1).plusDays(random.nextInt(25_000)))
+                    .mpa(new Rating(1 + random.nextInt(5)))
+                    .build());
+        }
+        users.addAll(userList);
+        films.addAll(filmList);
+        for (long userId = 1; userId <= size; userId++) {
+            for (int i = 0; i < LIKES_PER_USER; i++) {
+                films.like(1 + random.nextInt(size), userId);
+            }
+            for (int i = 0; i < FRIENDS_PER_USER; i++) {
+                long friendId = 1 + random.nextInt(size);
+                if (friendId != userId) {
+                    users.addFriend(userId, friendId);
+                }
+            }
+        }
+    }
+
+    public long randomId(Random random) {
+        return 1 + random.nextInt(size);
+    }
+}
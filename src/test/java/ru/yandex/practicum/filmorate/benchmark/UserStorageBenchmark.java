@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import ru.yandex.practicum.filmorate.model.user.User;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции UserStorage на БД и в памяти. Запуск: mvn -Pbenchmark -DskipTests verify
+ * (фильтр и параметры JMH передаются через -Djmh.args="...").
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UserStorageBenchmark {
+    @Benchmark
+    public Collection<User> findAll(StorageState state, QueryCounter counter) {
+        counter.start();
+        Collection<User> users = state.users.findAll();
+        counter.stop();
+        return users;
+    }
+
+    @Benchmark
+    public User findById(StorageState state, QueryCounter counter) {
+        long id = counter.randomId(state);
+        counter.start();
+        User user = state.users.findById(id);
+        counter.stop();
+        return user;
+    }
+
+    @Benchmark
+    public Collection<User> findFriends(StorageState state, QueryCounter counter) {
+        long id = counter.randomId(state);
+        counter.start();
+        Collection<User> friends = state.users.findFriends(id);
+        counter.stop();
+        return friends;
+    }
+
+    @Benchmark
+    public Collection<User> findMutuals(StorageState state, QueryCounter counter) {
+        long id = counter.randomId(state);
+        long otherId = counter.randomId(state);
+        counter.start();
+        Collection<User> mutuals = state.users.findMutuals(id, otherId);
+        counter.stop();
+        return mutuals;
+    }
+}
@@ -16,6 +16,8 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
@@ -65,6 +67,8 @@ public class FilmStorageTest {
                 .releaseDate(LocalDate.of(2000, 10, 10))
                 .mpa(new Rating(2))
                 .build();
+        // Поле genres не пришло в запросе - жанры фильма не меняются
+        film.setGenres(null);
         Film expectedFilm = Film.builder()
                 .id(1)
                 .name("name")
@@ -146,4 +150,50 @@ public class FilmStorageTest {
         Assertions.assertEquals(3, filmsList.get(1).getLikes().size());
     }
 
+    @Test
+    @Order(7)
+    void updateGenresTest() {
+        Film film = Film.builder()
+                .id(2)
+                .name("name")
+                .description("desc")
+                .duration(120)
+                .releaseDate(LocalDate.of(2000, 10, 10))
+                .mpa(new Rating(1))
+                .build();
+        film.getGenres().add(new Genre(2));
+        film.getGenres().add(new Genre(3));
+        Assertions.assertEquals(Set.of(new Genre(2, "Драма"), new Genre(3, "Мультфильм")), filmStorage.update(film).getGenres());
+
+        film.getGenres().remove(new Genre(2));
+        Assertions.assertEquals(Set.of(new Genre(3, "Мультфильм")), filmStorage.update(film).getGenres());
+
+        film.setGenres(null);
+        Assertions.assertEquals(Set.of(new Genre(3, "Мультфильм")), filmStorage.update(film).getGenres());
+
+        film.setGenres(new TreeSet<>());
+        Assertions.assertEquals(Set.of(), filmStorage.update(film).getGenres());
+    }
+
+    @Test
+    @Order(8)
+    void addAllTest() {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Film film = Film.builder()
+                    .name("batch" + i)
+                    .description("desc")
+                    .duration(90)
+                    .releaseDate(LocalDate.of(2001, 1, 1))
+                    .mpa(new Rating(3))
+                    .build();
+            film.getGenres().add(new Genre(i + 1));
+            films.add(film);
+        }
+
+        List<Long> ids = filmStorage.addAll(films);
+        Assertions.assertEquals(3, ids.size());
+        Assertions.assertEquals("batch2", filmStorage.findById(ids.get(2)).getName());
+        Assertions.assertEquals(Set.of(new Genre(3, "Мультфильм")), filmStorage.findById(ids.get(2)).getGenres());
+    }
 }
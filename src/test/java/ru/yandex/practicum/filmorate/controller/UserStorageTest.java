@@ -5,10 +5,12 @@ import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.user.User;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 
 import java.time.LocalDate;
+import java.util.List;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
@@ -93,4 +95,19 @@ public class UserStorageTest {
         Assertions.assertEquals(0, userStorage.findFriends(1).size());
 
     }
+
+    @Test
+    @Order(7)
+    void existsTest() {
+        Assertions.assertTrue(userStorage.exists(1));
+        Assertions.assertFalse(userStorage.exists(100));
+        Assertions.assertTrue(userStorage.existsAll(List.of(1L, 3L, 3L)));
+        Assertions.assertFalse(userStorage.existsAll(List.of(1L, 100L)));
+        Assertions.assertThrows(NotFoundException.class, () -> userStorage.update(User.builder()
+                .id(100)
+                .name("name")
+                .login("login")
+                .email("mail@yandex.ru")
+                .birthday(LocalDate.of(1990, 1, 1)).build()));
+    }
 }
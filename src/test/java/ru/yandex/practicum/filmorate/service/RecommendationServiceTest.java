@@ -0,0 +1,158 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Rating;
+import ru.yandex.practicum.filmorate.model.user.User;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+public class RecommendationServiceTest {
+    private static final int FILMS = 30;
+    private static final int USERS = 60;
+
+    private InMemoryFilmStorage filmStorage;
+    private InMemoryUserStorage userStorage;
+
+    @BeforeEach
+    void setUp() {
+        userStorage = new InMemoryUserStorage();
+        filmStorage = new InMemoryFilmStorage(
+                new UserService(userStorage, Validation.buildDefaultValidatorFactory().getValidator()));
+        for (int i = 0; i < USERS; i++) {
+            userStorage.add(User.builder()
+                    .email("user" + i + "@yandex.ru")
+                    .login("user" + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build());
+        }
+        addFilms(filmStorage);
+    }
+
+    @Test
+    void similarFilmsAreRankedByCosine() {
+        RecommendationService service = new RecommendationService(filmStorage, userStorage, 10);
+        service.rebuild();
+        like(service, 1, 1, 2, 3);
+        like(service, 2, 1, 2);
+        like(service, 3, 1, 3);
+        like(service, 4, 2, 4);
+        like(service, 5, 3);
+
+        Assertions.assertEquals(List.of(2L, 3L), service.findSimilarIds(1, 5));
+        Assertions.assertEquals(List.of(2L), service.findSimilarIds(1, 1));
+        Assertions.assertEquals(List.of(3L, 4L), service.findRecommendedIds(2, 5));
+        Assertions.assertEquals(List.of(), service.findSimilarIds(5, 5));
+    }
+
+    @Test
+    void unlikeRemovesCooccurrence() {
+        RecommendationService service = new RecommendationService(filmStorage, userStorage, 10);
+        service.rebuild();
+        like(service, 1, 1, 2);
+        unlike(service, 1, 2);
+
+        Assertions.assertEquals(List.of(), service.findSimilarIds(1, 5));
+        Assertions.assertEquals(List.of(), service.findRecommendedIds(1, 5));
+    }
+
+    @Test
+    void usersWithTooManyLikesAreIgnored() {
+        RecommendationService service = new RecommendationService(filmStorage, userStorage, 2);
+        service.rebuild();
+        like(service, 1, 1, 2, 3);
+        Assertions.assertEquals(List.of(), service.findSimilarIds(1, 5));
+
+        unlike(service, 1, 3);
+        Assertions.assertEquals(List.of(2L), service.findSimilarIds(1, 5));
+    }
+
+    @Test
+    void incrementalUpdatesMatchRebuild() {
+        RecommendationService incremental = new RecommendationService(filmStorage, userStorage, 8);
+        incremental.rebuild();
+        Random random = new Random(42);
+        for (int i = 0; i < 3_000; i++) {
+            long filmId = 1 + random.nextInt(FILMS);
+            long userId = 1 + random.nextInt(USERS);
+            if (random.nextInt(3) == 0 && filmStorage.findById(filmId).getLikes().contains(userId)) {
+                unlike(incremental, userId, filmId);
+            } else {
+                like(incremental, userId, filmId);
+            }
+        }
+
+        RecommendationService rebuilt = new RecommendationService(filmStorage, userStorage, 8);
+        rebuilt.rebuild();
+        for (long filmId = 1; filmId <= FILMS; filmId++) {
+            Assertions.assertEquals(rebuilt.findSimilarIds(filmId, FILMS), incremental.findSimilarIds(filmId, FILMS));
+        }
+        for (long userId = 1; userId <= USERS; userId++) {
+            Assertions.assertEquals(rebuilt.findRecommendedIds(userId, FILMS),
+                    incremental.findRecommendedIds(userId, FILMS));
+        }
+    }
+
+    @Test
+    void likesDuringRebuildAreReplayed() {
+        RecommendationService[] service = new RecommendationService[1];
+        filmStorage = new InMemoryFilmStorage(
+                new UserService(userStorage, Validation.buildDefaultValidatorFactory().getValidator())) {
+            @Override
+            public void streamAll(Consumer<Film> consumer) {
+                super.streamAll(consumer);
+                // Лайки из другого потока во время сборки не должны ждать ее окончания
+                Thread writer = Thread.ofPlatform().start(() -> {
+                    service[0].like(3, 1, () -> filmStorage.addLike(3, 1));
+                    service[0].unlike(2, 1, () -> filmStorage.deleteLike(2, 1));
+                });
+                try {
+                    writer.join(10_000);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                Assertions.assertFalse(writer.isAlive());
+            }
+        };
+        addFilms(filmStorage);
+        filmStorage.addLike(1, 1);
+        filmStorage.addLike(2, 1);
+        service[0] = new RecommendationService(filmStorage, userStorage, 10);
+        service[0].rebuild();
+
+        Assertions.assertEquals(List.of(3L), service[0].findSimilarIds(1, 5));
+        Assertions.assertEquals(List.of(), service[0].findSimilarIds(2, 5));
+    }
+
+    private static void addFilms(InMemoryFilmStorage storage) {
+        for (int i = 0; i < FILMS; i++) {
+            storage.add(Film.builder()
+                    .name("film" + i)
+                    .description("description")
+                    .duration(100)
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .mpa(new Rating(1))
+                    .build());
+        }
+    }
+
+    private void like(RecommendationService service, long userId, long... filmIds) {
+        for (long filmId : filmIds) {
+            filmStorage.addLike(filmId, userId);
+            service.onLike(filmId, userId);
+        }
+    }
+
+    private void unlike(RecommendationService service, long userId, long filmId) {
+        filmStorage.deleteLike(filmId, userId);
+        service.onUnlike(filmId, userId);
+    }
+}
@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class ConcurrencyLimitingDataSourceTest {
+    private ConcurrencyLimitingDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:limiter;DB_CLOSE_DELAY=-1");
+        dataSource = new ConcurrencyLimitingDataSource(h2, 2, Duration.ofMillis(100));
+    }
+
+    @Test
+    void failsWhenAllConnectionsAreBusy() throws Exception {
+        try (Connection first = dataSource.getConnection(); Connection second = dataSource.getConnection()) {
+            Assertions.assertEquals(2, dataSource.getActiveConnections());
+            Assertions.assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        }
+        Assertions.assertEquals(0, dataSource.getActiveConnections());
+    }
+
+    @Test
+    void waitingThreadGetsReleasedConnection() throws Exception {
+        ConcurrencyLimitingDataSource slow = new ConcurrencyLimitingDataSource(
+                dataSource.getTargetDataSource(), 1, Duration.ofSeconds(10));
+        Connection busy = slow.getConnection();
+        CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> {
+            try (Connection connection = slow.getConnection()) {
+                return connection.isValid(1);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (slow.getWaitingThreads() == 0) {
+            Thread.onSpinWait();
+        }
+        busy.close();
+
+        Assertions.assertTrue(waiting.get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, slow.getActiveConnections());
+    }
+
+    @Test
+    void repeatedCloseReleasesOnce() throws Exception {
+        Connection connection = dataSource.getConnection();
+        connection.close();
+        connection.close();
+
+        Assertions.assertEquals(0, dataSource.getActiveConnections());
+        try (Connection first = dataSource.getConnection(); Connection second = dataSource.getConnection()) {
+            Assertions.assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        }
+    }
+}
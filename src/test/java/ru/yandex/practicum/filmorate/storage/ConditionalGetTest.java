@@ -0,0 +1,134 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Rating;
+import ru.yandex.practicum.filmorate.model.user.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.LocalDate;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class ConditionalGetTest {
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private FilmDbStorage filmStorage;
+
+    @Autowired
+    private UserDbStorage userStorage;
+
+    @Autowired
+    private ReferenceDataCache referenceData;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    void everyFilmMutationChangesETag() throws Exception {
+        long userId = addUser("film_fan").getId();
+        Film film = filmStorage.add(Film.builder()
+                .name("name")
+                .description("description")
+                .duration(100)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .mpa(new Rating(1))
+                .build());
+        String path = "/films/" + film.getId();
+
+        String etag = etagOf(path);
+        assertNotModified(path, etag);
+
+        filmStorage.like(film.getId(), userId);
+        String liked = assertModified(path, etag);
+        filmStorage.removeLike(film.getId(), userId);
+        String unliked = assertModified(path, liked);
+        film.setDescription("new description");
+        filmStorage.update(film);
+        assertModified(path, unliked);
+    }
+
+    @Test
+    void friendshipChangesETag() throws Exception {
+        long userId = addUser("friendly").getId();
+        long friendId = addUser("friend").getId();
+        String path = "/users/" + userId;
+
+        String etag = etagOf(path);
+        assertNotModified(path, etag);
+
+        userStorage.addFriend(userId, friendId);
+        String added = assertModified(path, etag);
+        userStorage.deleteFriend(userId, friendId);
+        assertModified(path, added);
+    }
+
+    @Test
+    void referenceDataETagIsStable() throws Exception {
+        String etag = etagOf("/genres");
+        Assertions.assertEquals(etag, etagOf("/mpa/1"));
+        assertNotModified("/genres", etag);
+        assertNotModified("/mpa", etag);
+    }
+
+    @Test
+    void reloadChangesETagOnlyWhenReferenceDataChanges() throws Exception {
+        String etag = etagOf("/genres");
+        referenceData.reload();
+        assertNotModified("/genres", etag);
+
+        jdbc.update("INSERT INTO genre (genre_id, name) VALUES (100, 'Вестерн')");
+        try {
+            referenceData.reload();
+            String reloaded = assertModified("/genres", etag);
+            Assertions.assertEquals("Вестерн", referenceData.findGenre(100).getName());
+            assertNotModified("/mpa", reloaded);
+        } finally {
+            jdbc.update("DELETE FROM genre WHERE genre_id = 100");
+            referenceData.reload();
+        }
+        Assertions.assertFalse(referenceData.hasGenre(100));
+    }
+
+    private User addUser(String login) {
+        return userStorage.add(User.builder()
+                .name(login)
+                .login(login)
+                .email(login + "@yandex.ru")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+    }
+
+    private String etagOf(String path) throws Exception {
+        String etag = mvc.perform(get(path)).andExpect(status().isOk()).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        Assertions.assertNotNull(etag);
+        return etag;
+    }
+
+    private void assertNotModified(String path, String etag) throws Exception {
+        mvc.perform(get(path).header(HttpHeaders.IF_NONE_MATCH, etag)).andExpect(status().isNotModified());
+    }
+
+    private String assertModified(String path, String etag) throws Exception {
+        String current = mvc.perform(get(path).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        Assertions.assertNotEquals(etag, current);
+        return current;
+    }
+}
@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Rating;
+import ru.yandex.practicum.filmorate.model.user.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Одновременные повторы одной и той же записи в БД должны сводиться к одной записи без ошибок.
+ */
+@SpringBootTest
+@AutoConfigureTestDatabase
+public class DbStorageConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 20;
+
+    @Autowired
+    private FilmDbStorage filmStorage;
+
+    @Autowired
+    private UserDbStorage userStorage;
+
+    @Test
+    void concurrentDuplicateLikesAreCountedOnce() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            long userId = addUser("duplicate_like" + round);
+            long filmId = filmStorage.add(film("duplicate_like" + round)).getId();
+
+            runConcurrently(() -> Assertions.assertEquals(1, filmStorage.addLike(filmId, userId)));
+
+            Film film = filmStorage.findById(filmId);
+            Assertions.assertEquals(1, film.getLikeCount());
+            Assertions.assertEquals(List.of(userId), List.copyOf(film.getLikes()));
+        }
+    }
+
+    @Test
+    void concurrentDuplicateFriendshipsAreCountedOnce() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            long userId = addUser("duplicate_friend" + round);
+            long friendId = addUser("duplicate_friend_target" + round);
+            long version = userStorage.findVersion(userId);
+
+            runConcurrently(() -> userStorage.addFriendship(userId, friendId));
+
+            User user = userStorage.findById(userId);
+            Assertions.assertEquals(1, user.getFriendCount());
+            Assertions.assertEquals(List.of(friendId), List.copyOf(user.getFriends()));
+            Assertions.assertEquals(version + 1, userStorage.findVersion(userId));
+        }
+    }
+
+    @Test
+    void concurrentUpdatesLeaveOnlyLastTextInSearchIndex() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            long filmId = filmStorage.add(film("concurrent" + round)).getId();
+            String prefix = "update" + round + "v";
+            AtomicInteger names = new AtomicInteger();
+
+            runConcurrently(() -> {
+                Film film = film(prefix + names.incrementAndGet());
+                film.setId(filmId);
+                filmStorage.update(film);
+            });
+
+            String name = filmStorage.findById(filmId).getName();
+            for (int thread = 1; thread <= THREADS; thread++) {
+                String candidate = prefix + thread;
+                List<Long> expected = candidate.equals(name) ? List.of(filmId) : List.of();
+                Assertions.assertEquals(expected, filmStorage.search(candidate + " ", 10).stream()
+                        .map(Film::getId)
+                        .toList(), candidate);
+            }
+        }
+    }
+
+    private static Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("description")
+                .duration(100)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .mpa(new Rating(1))
+                .build();
+    }
+
+    private long addUser(String login) {
+        return userStorage.add(User.builder()
+                .name(login)
+                .login(login)
+                .email(login + "@yandex.ru")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build()).getId();
+    }
+
+    private static void runConcurrently(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
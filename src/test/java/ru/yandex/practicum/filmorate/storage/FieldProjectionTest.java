@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.model.FieldSet;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Genre;
+import ru.yandex.practicum.filmorate.model.film.Rating;
+import ru.yandex.practicum.filmorate.model.user.User;
+import ru.yandex.practicum.filmorate.monitoring.QueryCountingFilter;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "filmorate.monitoring.debug-headers=true")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class FieldProjectionTest {
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private FilmDbStorage filmStorage;
+
+    @Autowired
+    private UserDbStorage userStorage;
+
+    private long filmId;
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = userStorage.add(User.builder()
+                .name("projection")
+                .login("projection")
+                .email("projection@yandex.ru")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build()).getId();
+        Film film = Film.builder()
+                .name("projection")
+                .description("description")
+                .duration(100)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .mpa(new Rating(1))
+                .build();
+        film.getGenres().add(new Genre(1));
+        filmId = filmStorage.add(film).getId();
+        filmStorage.addLike(filmId, userId);
+    }
+
+    @Test
+    void storageReadsOnlyRequestedFields() {
+        Film film = filmStorage.findById(filmId, FieldSet.parse("name,likeCount", Film.FIELDS));
+        Assertions.assertEquals("projection", film.getName());
+        Assertions.assertEquals(1, film.getLikeCount());
+        Assertions.assertNull(film.getDescription());
+        Assertions.assertNull(film.getMpa());
+        Assertions.assertTrue(film.getLikes().isEmpty());
+        Assertions.assertTrue(film.getGenres().isEmpty());
+
+        Film full = filmStorage.findById(filmId);
+        Assertions.assertEquals(Set.of(userId), full.getLikes());
+        Assertions.assertEquals(1, full.getGenres().size());
+    }
+
+    @Test
+    void unrequestedRelationsAreNotQueried() throws Exception {
+        MvcResult projected = mvc.perform(get("/films/" + filmId).param("fields", "id,name,mpa"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"id\":" + filmId + ",\"name\":\"projection\",\"mpa\":{\"id\":1,\"name\":\"G\"}}", true))
+                .andReturn();
+        MvcResult full = mvc.perform(get("/films/" + filmId)).andExpect(status().isOk()).andReturn();
+        Assertions.assertEquals(1, queries(projected));
+        Assertions.assertEquals(3, queries(full));
+
+        mvc.perform(get("/users/" + userId).param("fields", "login,friendCount"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"login\":\"projection\",\"friendCount\":0}", true));
+    }
+
+    @Test
+    void streamedExportKeepsDebugHeaders() throws Exception {
+        MvcResult started = mvc.perform(get("/films/export")).andExpect(request().asyncStarted()).andReturn();
+        MvcResult exported = mvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+
+        Assertions.assertNotNull(exported.getResponse().getHeader(QueryCountingFilter.QUERY_COUNT_HEADER));
+        Assertions.assertTrue(exported.getResponse().getContentAsString().contains("\"name\":\"projection\""));
+    }
+
+    @Test
+    void unknownFieldsAreRejected() throws Exception {
+        mvc.perform(get("/films").param("fields", "id,rating")).andExpect(status().isBadRequest());
+        mvc.perform(get("/users").param("fields", "likes")).andExpect(status().isBadRequest());
+    }
+
+    private int queries(MvcResult result) {
+        return Integer.parseInt(result.getResponse().getHeader(QueryCountingFilter.QUERY_COUNT_HEADER));
+    }
+}
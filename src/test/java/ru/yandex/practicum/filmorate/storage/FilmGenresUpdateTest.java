@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Genre;
+import ru.yandex.practicum.filmorate.model.film.Rating;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+
+import java.time.LocalDate;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class FilmGenresUpdateTest {
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private FilmDbStorage filmStorage;
+
+    @Test
+    void absentGenresAreKeptAndEmptyGenresAreCleared() throws Exception {
+        Film film = Film.builder()
+                .name("genres")
+                .description("description")
+                .duration(100)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .mpa(new Rating(1))
+                .build();
+        film.getGenres().add(new Genre(1));
+        film.getGenres().add(new Genre(2));
+        long id = filmStorage.add(film).getId();
+        String body = "{\"id\":" + id + ",\"name\":\"genres\",\"description\":\"description\",\"duration\":100,"
+                + "\"releaseDate\":\"2000-01-01\",\"mpa\":{\"id\":1}%s}";
+
+        mvc.perform(put("/films").contentType(MediaType.APPLICATION_JSON).content(body.formatted("")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.genres.length()").value(2));
+        mvc.perform(put("/films").contentType(MediaType.APPLICATION_JSON).content(body.formatted(",\"genres\":[{\"id\":2}]")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.genres[0].id").value(2))
+                .andExpect(jsonPath("$.genres.length()").value(1));
+        mvc.perform(put("/films").contentType(MediaType.APPLICATION_JSON).content(body.formatted(",\"genres\":[]")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.genres.length()").value(0));
+    }
+}
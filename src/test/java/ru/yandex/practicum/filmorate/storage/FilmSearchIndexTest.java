@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+
+import java.util.*;
+
+public class FilmSearchIndexTest {
+    private FilmSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new FilmSearchIndex();
+        index.add(1, "Ёжик в тумане", "Мультфильм про ежика и лошадь");
+        index.add(2, "Терминатор", "Фильм про робота из будущего");
+        index.add(3, "Туманность Андромеды", "Советская фантастика");
+    }
+
+    @Test
+    void findsCyrillicWordsIgnoringCaseAndYo() {
+        Assertions.assertEquals(List.of(1L), index.search("ЕЖИК ", 10));
+        Assertions.assertEquals(List.of(2L), index.search("Робота ", 10));
+        Assertions.assertEquals(List.of(), index.search("пингвин ", 10));
+        Assertions.assertEquals(List.of(), index.search("  ", 10));
+    }
+
+    @Test
+    void matchesLastWordByPrefix() {
+        Assertions.assertEquals(List.of(3L, 1L), index.search("тума", 10));
+        Assertions.assertEquals(List.of(), index.search("тума ", 10));
+        Assertions.assertEquals(List.of(3L), index.search("советская андр", 10));
+    }
+
+    @Test
+    void ranksNameAboveDescriptionAndLimitsCount() {
+        index.add(4, "Робот", "Фильм");
+
+        Assertions.assertEquals(List.of(4L, 2L), index.search("робот", 10));
+        Assertions.assertEquals(List.of(4L), index.search("робот", 1));
+    }
+
+    @Test
+    void updateReplacesOldText() {
+        index.update(2, 2, "Терминатор 2", "Судный день");
+
+        Assertions.assertEquals(List.of(), index.search("робота ", 10));
+        Assertions.assertEquals(List.of(2L), index.search("судный ", 10));
+        Assertions.assertEquals(List.of(2L), index.search("терминатор ", 10));
+    }
+
+    @Test
+    void updateIgnoresOlderVersion() {
+        index.update(2, 3, "Терминатор 3", "Восстание машин");
+        index.update(2, 2, "Терминатор 2", "Судный день");
+
+        Assertions.assertEquals(List.of(), index.search("судный ", 10));
+        Assertions.assertEquals(List.of(2L), index.search("восстание ", 10));
+    }
+
+    @Test
+    void rebuildMatchesIncrementalIndex() {
+        Random random = new Random(42);
+        String[] words = {"кино", "драма", "комедия", "фантастика", "робот", "любовь", "война", "мир", "space", "love"};
+        Map<Long, String[]> films = new TreeMap<>();
+        FilmSearchIndex incremental = new FilmSearchIndex();
+        for (long filmId = 1; filmId <= 50_000; filmId++) {
+            String name = words[random.nextInt(words.length)];
+            StringBuilder description = new StringBuilder();
+            for (int i = 0; i < 1 + random.nextInt(8); i++) {
+                description.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            films.put(filmId, new String[]{name, description.toString()});
+            incremental.add(filmId, name, description.toString());
+        }
+        FilmSearchIndex rebuilt = new FilmSearchIndex();
+        rebuilt.rebuild(sink -> films.forEach((filmId, text) -> sink.accept(filmId, 1, text[0], text[1])));
+
+        for (String query : List.of("робот ", "кино драма ", "ком", "war", "любовь мир война space lo")) {
+            Assertions.assertEquals(incremental.search(query, 20), rebuilt.search(query, 20), query);
+        }
+    }
+
+    @Test
+    void searchDuringAddsDoesNotFail() throws Exception {
+        Thread writer = Thread.ofPlatform().start(() -> {
+            for (long filmId = 10; filmId < 100_000; filmId++) {
+                index.add(filmId, "кино", "драма кино");
+            }
+        });
+        while (writer.isAlive()) {
+            index.search("кино драма ", 10);
+        }
+        writer.join();
+        Assertions.assertEquals(10, index.search("кино драма ", 10).size());
+    }
+}
@@ -0,0 +1,230 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Rating;
+import ru.yandex.practicum.filmorate.model.user.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.IntConsumer;
+import java.util.stream.LongStream;
+
+public class InMemoryStorageConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int FILMS = 20;
+    private static final int USERS = 100;
+
+    private InMemoryUserStorage userStorage;
+    private InMemoryFilmStorage filmStorage;
+
+    @BeforeEach
+    void setUp() {
+        userStorage = new InMemoryUserStorage();
+        filmStorage = new InMemoryFilmStorage(
+                new UserService(userStorage, Validation.buildDefaultValidatorFactory().getValidator()));
+    }
+
+    @Test
+    void concurrentAddsGetUniqueIds() throws Exception {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < USERS; i++) {
+                ids.add(userStorage.add(user(thread * USERS + i)).getId());
+                ids.add(filmStorage.add(film(thread * USERS + i)).getId() + THREADS * USERS);
+            }
+        });
+
+        Assertions.assertEquals(2 * THREADS * USERS, ids.size());
+        Assertions.assertEquals(THREADS * USERS, userStorage.findAll().size());
+        Assertions.assertEquals(THREADS * USERS, filmStorage.findAll().size());
+        Assertions.assertEquals(LongStream.rangeClosed(1, THREADS * USERS).boxed().toList(),
+                userStorage.findPage(0, THREADS * USERS).stream().map(User::getId).toList());
+    }
+
+    @Test
+    void concurrentLikesAreCountedOnce() throws Exception {
+        seed();
+        // Фильм f лайкают пользователи 1..5f, каждую пару обрабатывают два потока, лайки пользователей,
+        // кратных трем, затем снимаются - итоговое состояние не зависит от порядка операций
+        Map<Long, LongAccumulator> maxCounts = new ConcurrentHashMap<>();
+        runConcurrently(THREADS, thread -> {
+            for (long filmId = 1; filmId <= FILMS; filmId++) {
+                LongAccumulator maxCount = maxCounts.computeIfAbsent(filmId, id -> new LongAccumulator(Math::max, 0));
+                for (long userId = 1 + thread % 2; userId <= filmId * 5; userId += 2) {
+                    for (long liker : new long[]{userId, userId == 1 ? 1 : userId - 1}) {
+                        long count = filmStorage.addLike(filmId, liker);
+                        Assertions.assertTrue(count >= 1 && count <= filmId * 5, "likes: " + count);
+                        Assertions.assertTrue(filmStorage.findById(filmId).getLikes().contains(liker));
+                        maxCount.accumulate(count);
+                    }
+                }
+            }
+        });
+        // Лайк, выполненный последним, видит все остальные
+        for (long filmId = 1; filmId <= FILMS; filmId++) {
+            Assertions.assertEquals(filmId * 5, maxCounts.get(filmId).get());
+        }
+        // Каждый фильм снимает один поток, поэтому ответы сверяются с последовательной моделью
+        runConcurrently(THREADS, thread -> {
+            for (long filmId = 1 + thread; filmId <= FILMS; filmId += THREADS) {
+                long expected = filmId * 5;
+                for (long userId = 3; userId <= filmId * 5; userId += 3) {
+                    Assertions.assertEquals(--expected, filmStorage.deleteLike(filmId, userId));
+                    Assertions.assertEquals(expected, filmStorage.findById(filmId).getLikeCount());
+                }
+            }
+        });
+
+        for (long filmId = 1; filmId <= FILMS; filmId++) {
+            Assertions.assertEquals(filmId * 5 - filmId * 5 / 3, filmStorage.findById(filmId).getLikes().size());
+        }
+        Assertions.assertEquals(LongStream.iterate(FILMS, id -> id - 1).limit(5).boxed().toList(),
+                filmStorage.findPopular(5).stream().map(Film::getId).toList());
+    }
+
+    @Test
+    void popularityFollowsConcurrentLikesAndUnlikes() throws Exception {
+        seed();
+        AtomicInteger writers = new AtomicInteger(THREADS);
+        runConcurrently(THREADS + 1, thread -> {
+            if (thread == THREADS) {
+                // Топ читается слабо согласованным итератором, и переставляемый в этот момент фильм может
+                // в него не попасть, но дублей, null и счетчиков вне допустимых границ быть не должно
+                while (writers.get() > 0 && !Thread.currentThread().isInterrupted()) {
+                    List<Film> popular = List.copyOf(filmStorage.findPopular(FILMS));
+                    Assertions.assertTrue(popular.size() <= FILMS);
+                    Assertions.assertEquals(popular.size(), popular.stream().map(Film::getId).distinct().count());
+                    for (Film film : popular) {
+                        Assertions.assertTrue(film.getLikeCount() >= 0 && film.getLikeCount() <= USERS);
+                    }
+                }
+                return;
+            }
+            // Пара фильм-пользователь принадлежит одному потоку, поэтому его собственная запись видна сразу
+            for (int round = 0; round < 50; round++) {
+                long filmId = 1 + round % FILMS;
+                for (long userId = 1 + thread; userId <= USERS; userId += THREADS) {
+                    filmStorage.addLike(filmId, userId);
+                    Assertions.assertTrue(filmStorage.findById(filmId).getLikes().contains(userId));
+                    filmStorage.deleteLike(filmId, userId);
+                    Assertions.assertFalse(filmStorage.findById(filmId).getLikes().contains(userId));
+                }
+            }
+            for (long userId = 1 + thread; userId <= USERS; userId += THREADS) {
+                filmStorage.addLike(1 + userId % 3, userId);
+            }
+            writers.decrementAndGet();
+        });
+
+        List<Film> popular = List.copyOf(filmStorage.findPopular(FILMS));
+        Assertions.assertEquals(FILMS, popular.size());
+        for (int i = 1; i < popular.size(); i++) {
+            Assertions.assertTrue(popular.get(i - 1).getLikes().size() >= popular.get(i).getLikes().size());
+        }
+        Assertions.assertEquals(USERS, popular.stream().mapToInt(film -> film.getLikes().size()).sum());
+    }
+
+    @Test
+    void concurrentUpdatesKeepLikes() throws Exception {
+        seed();
+        runConcurrently(THREADS, thread -> {
+            for (long userId = 1 + thread; userId <= USERS; userId += THREADS) {
+                filmStorage.addLike(1, userId);
+                Film update = film(0);
+                update.setId(1);
+                update.setName("film" + userId);
+                filmStorage.update(update);
+                Assertions.assertTrue(filmStorage.findById(1).getLikes().contains(userId));
+            }
+        });
+
+        Assertions.assertEquals(USERS, filmStorage.findById(1).getLikes().size());
+        Assertions.assertEquals(1, filmStorage.findPopular(1).iterator().next().getId());
+    }
+
+    @Test
+    void concurrentFriendshipsAreSymmetric() throws Exception {
+        seed();
+        runConcurrently(THREADS, thread -> {
+            for (long id = 1; id <= USERS; id++) {
+                for (long friendId = id + 1; friendId <= Math.min(USERS, id + 3); friendId++) {
+                    if ((id + friendId) % THREADS == thread) {
+                        userStorage.addFriendship(id, friendId);
+                        Assertions.assertTrue(userStorage.findById(id).getFriends().contains(friendId));
+                        Assertions.assertTrue(userStorage.findById(friendId).getFriends().contains(id));
+                    }
+                }
+            }
+        });
+
+        for (long id = 1; id <= USERS; id++) {
+            Set<Long> expected = new HashSet<>();
+            for (long friendId = Math.max(1, id - 3); friendId <= Math.min(USERS, id + 3); friendId++) {
+                if (friendId != id) {
+                    expected.add(friendId);
+                }
+            }
+            Assertions.assertEquals(expected, userStorage.findById(id).getFriends());
+        }
+    }
+
+    private void seed() {
+        for (int i = 0; i < USERS; i++) {
+            userStorage.add(user(i));
+        }
+        for (int i = 0; i < FILMS; i++) {
+            filmStorage.add(film(i));
+        }
+    }
+
+    private static void runConcurrently(int threads, IntConsumer task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int number = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.accept(number);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static User user(int number) {
+        return User.builder()
+                .email("user" + number + "@yandex.ru")
+                .login("user" + number)
+                .name("user" + number)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+
+    private static Film film(int number) {
+        return Film.builder()
+                .name("film" + number)
+                .description("description")
+                .duration(100)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .mpa(new Rating(1))
+                .build();
+    }
+}
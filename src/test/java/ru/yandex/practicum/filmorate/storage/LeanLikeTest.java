@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Rating;
+import ru.yandex.practicum.filmorate.model.user.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.LocalDate;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Лайк и снятие лайка с lean=true отвечают только счетчиком лайков фильма, повтор ничего не меняет.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class LeanLikeTest {
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private FilmDbStorage filmStorage;
+
+    @Autowired
+    private UserDbStorage userStorage;
+
+    @Test
+    void likeAndUnlikeReturnLikeCountAndAreIdempotent() throws Exception {
+        long filmId = filmStorage.add(Film.builder()
+                .name("lean")
+                .description("description")
+                .duration(100)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .mpa(new Rating(1))
+                .build()).getId();
+        long firstId = addUser("lean_first");
+        long secondId = addUser("lean_second");
+        String like = "/films/" + filmId + "/like/";
+
+        expectLikeCount(put(like + firstId).param("lean", "true"), filmId, 1);
+        expectLikeCount(put(like + firstId).param("lean", "true"), filmId, 1);
+        expectLikeCount(put(like + secondId).param("lean", "true"), filmId, 2);
+        mvc.perform(get("/films/" + filmId + "/likes"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[" + firstId + "," + secondId + "]", true));
+
+        expectLikeCount(delete(like + firstId).param("lean", "true"), filmId, 1);
+        expectLikeCount(delete(like + firstId).param("lean", "true"), filmId, 1);
+        expectLikeCount(delete(like + secondId).param("lean", "true"), filmId, 0);
+        mvc.perform(get("/films/" + filmId + "/likes"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]", true));
+    }
+
+    private void expectLikeCount(RequestBuilder request, long filmId, long likeCount) throws Exception {
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"filmId\":" + filmId + ",\"likeCount\":" + likeCount + "}", true));
+    }
+
+    private long addUser(String login) {
+        return userStorage.add(User.builder()
+                .name(login)
+                .login(login)
+                .email(login + "@yandex.ru")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build()).getId();
+    }
+}
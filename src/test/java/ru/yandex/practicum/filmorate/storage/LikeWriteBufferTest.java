@@ -0,0 +1,168 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Rating;
+import ru.yandex.practicum.filmorate.model.user.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+@SpringBootTest(properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.flush-interval=1h"
+})
+@AutoConfigureTestDatabase
+public class LikeWriteBufferTest {
+    private static final String COUNT_LIKES_QUERY = "SELECT COUNT(*) FROM likes WHERE film_id IN (%s)";
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private LikeWriteBuffer buffer;
+
+    @Autowired
+    private FilmDbStorage filmStorage;
+
+    @Autowired
+    private UserDbStorage userStorage;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private List<Long> films;
+    private List<Long> users;
+
+    @BeforeEach
+    void setUp() {
+        buffer.flush();
+        List<User> newUsers = new ArrayList<>();
+        List<Film> newFilms = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            newUsers.add(User.builder()
+                    .email("buffer" + i + "@yandex.ru")
+                    .login("buffer" + i)
+                    .name("buffer" + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build());
+            newFilms.add(Film.builder()
+                    .name("buffer" + i)
+                    .description("description")
+                    .duration(100)
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .mpa(new Rating(1))
+                    .build());
+        }
+        users = userStorage.addAll(newUsers);
+        films = filmStorage.addAll(newFilms);
+    }
+
+    @Test
+    void oppositeEventsCancelOut() {
+        long filmId = films.get(0);
+        Assertions.assertEquals(1, filmService.addLike(filmId, users.get(0)).getLikeCount());
+        Assertions.assertEquals(1, filmService.addLike(filmId, users.get(0)).getLikeCount());
+        Assertions.assertEquals(0, filmService.deleteLike(filmId, users.get(0)).getLikeCount());
+
+        Assertions.assertEquals(0, buffer.size());
+        buffer.flush();
+        Assertions.assertEquals(0, countLikes());
+    }
+
+    @Test
+    void pendingLikesAreVisibleBeforeFlush() {
+        long top = films.get(2);
+        for (long userId : users) {
+            filmService.addLike(top, userId);
+        }
+        filmService.addLike(films.get(1), users.get(0));
+
+        Assertions.assertEquals(Set.copyOf(users), filmService.find(top).getLikes());
+        Assertions.assertEquals(List.of(top, films.get(1), films.get(0)),
+                popularOf(filmService.findPopular(100)));
+        Assertions.assertEquals(0, countLikes());
+
+        buffer.flush();
+        Assertions.assertEquals(0, buffer.size());
+        Assertions.assertEquals(4, countLikes());
+        Assertions.assertEquals(List.of(top, films.get(1), films.get(0)),
+                popularOf(filmStorage.findPopular(100)));
+
+        filmService.deleteLike(top, users.get(0));
+        filmService.deleteLike(top, users.get(1));
+        Assertions.assertEquals(List.of(films.get(1), top, films.get(0)),
+                popularOf(filmService.findPopular(100)));
+        buffer.flush();
+        Assertions.assertEquals(List.of(films.get(1), top, films.get(0)),
+                popularOf(filmStorage.findPopular(100)));
+    }
+
+    @Test
+    void likePagesAndCountsIncludePending() {
+        long filmId = films.get(0);
+        filmService.addLike(filmId, users.get(0));
+        filmService.addLike(filmId, users.get(2));
+        buffer.flush();
+
+        filmService.deleteLike(filmId, users.get(0));
+        filmService.addLike(filmId, users.get(1));
+        Assertions.assertEquals(2, filmService.find(filmId).getLikeCount());
+        Assertions.assertEquals(List.of(users.get(1)), filmService.findLikes(filmId, 0, 1));
+        Assertions.assertEquals(List.of(users.get(2)), filmService.findLikes(filmId, users.get(1), 1));
+        Assertions.assertEquals(List.of(users.get(1), users.get(2)), filmService.findLikes(filmId, 0, 10));
+
+        buffer.flush();
+        Assertions.assertEquals(2, filmService.find(filmId).getLikeCount());
+        Assertions.assertEquals(List.of(users.get(1), users.get(2)), filmStorage.findLikes(filmId, 0, 10));
+    }
+
+    @Test
+    void rejectsMissingFilmsAndUsers() {
+        Assertions.assertThrows(NotFoundException.class, () -> filmService.addLike(-1, users.get(0)));
+        Assertions.assertThrows(NotFoundException.class, () -> filmService.addLike(films.get(0), -1));
+        Assertions.assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void fullBufferIsFlushedByCallerAndDrainedOnClose() throws Exception {
+        LikeWriteBuffer small = new LikeWriteBuffer(jdbc, transactionManager, Duration.ofHours(1), 2, 2);
+        for (long userId : users) {
+            small.like(films.get(0), userId);
+        }
+        Assertions.assertTrue(small.size() <= 1);
+        Assertions.assertTrue(countLikes() >= 2);
+
+        small.close();
+        Assertions.assertEquals(3, countLikes());
+        Assertions.assertEquals(3, filmStorage.findById(films.get(0)).getLikes().size());
+    }
+
+    private List<Long> popularOf(Collection<Film> popular) {
+        return popular.stream().map(Film::getId).filter(films::contains).toList();
+    }
+
+    private long countLikes() {
+        String ids = String.join(",", films.stream().map(String::valueOf).toList());
+        return jdbc.queryForObject(COUNT_LIKES_QUERY.formatted(ids), Long.class);
+    }
+}
@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Rating;
+import ru.yandex.practicum.filmorate.model.user.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.LocalDate;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class PagingTest {
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private FilmDbStorage filmStorage;
+
+    @Autowired
+    private UserDbStorage userStorage;
+
+    private long filmId;
+    private long[] userIds;
+
+    @BeforeEach
+    void setUp() {
+        userIds = new long[4];
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = userStorage.add(User.builder()
+                    .name("paging" + i)
+                    .login("paging" + i)
+                    .email("paging" + i + "@yandex.ru")
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build()).getId();
+        }
+        filmId = filmStorage.add(Film.builder()
+                .name("paging")
+                .description("description")
+                .duration(100)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .mpa(new Rating(1))
+                .build()).getId();
+        for (long userId : userIds) {
+            filmStorage.addLike(filmId, userId);
+        }
+        for (int i = 1; i < userIds.length; i++) {
+            userStorage.addFriendship(userIds[0], userIds[i]);
+        }
+    }
+
+    @Test
+    void pageSizeIsCapped() throws Exception {
+        mvc.perform(get("/films").param("limit", "1000")).andExpect(status().isOk());
+        mvc.perform(get("/films").param("limit", "1001")).andExpect(status().isBadRequest());
+        mvc.perform(get("/users").param("after", "0").param("limit", "1001")).andExpect(status().isBadRequest());
+        mvc.perform(get("/films/1/likes").param("limit", "1001")).andExpect(status().isBadRequest());
+        mvc.perform(get("/users/1/friends/ids").param("limit", "1001")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void compactOmitsLikeAndFriendSets() throws Exception {
+        mvc.perform(get("/films/" + filmId).param("compact", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.likeCount").value(userIds.length))
+                .andExpect(jsonPath("$.likes").doesNotExist())
+                .andExpect(jsonPath("$.name").value("paging"));
+        mvc.perform(get("/films/" + filmId))
+                .andExpect(jsonPath("$.likes.length()").value(userIds.length));
+
+        mvc.perform(get("/users/" + userIds[0]).param("compact", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.friendCount").value(userIds.length - 1))
+                .andExpect(jsonPath("$.friends").doesNotExist())
+                .andExpect(jsonPath("$.login").value("paging0"));
+    }
+
+    @Test
+    void likesArePagedByUserId() throws Exception {
+        mvc.perform(get("/films/" + filmId + "/likes").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[" + userIds[0] + "," + userIds[1] + "]", true));
+        mvc.perform(get("/films/" + filmId + "/likes").param("after", String.valueOf(userIds[1])).param("limit", "2"))
+                .andExpect(content().json("[" + userIds[2] + "," + userIds[3] + "]", true));
+        mvc.perform(get("/films/" + filmId + "/likes").param("after", String.valueOf(userIds[3])))
+                .andExpect(content().json("[]", true));
+    }
+
+    @Test
+    void friendIdsArePagedByUserId() throws Exception {
+        mvc.perform(get("/users/" + userIds[0] + "/friends/ids").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[" + userIds[1] + "," + userIds[2] + "]", true));
+        mvc.perform(get("/users/" + userIds[0] + "/friends/ids").param("after", String.valueOf(userIds[2])))
+                .andExpect(content().json("[" + userIds[3] + "]", true));
+        mvc.perform(get("/users/" + userIds[1] + "/friends/ids"))
+                .andExpect(content().json("[]", true));
+    }
+
+    @Test
+    void friendCountFollowsFriendships() throws Exception {
+        mvc.perform(put("/users/" + userIds[1] + "/friends/" + userIds[2])).andExpect(status().isOk());
+        mvc.perform(put("/users/" + userIds[1] + "/friends/" + userIds[3]).param("lean", "true"))
+                .andExpect(status().isNoContent());
+        mvc.perform(get("/users/" + userIds[1]).param("fields", "friendCount"))
+                .andExpect(content().json("{\"friendCount\":2}", true));
+
+        mvc.perform(delete("/users/" + userIds[1] + "/friends/" + userIds[2]).param("lean", "true"))
+                .andExpect(status().isNoContent());
+        mvc.perform(get("/users/" + userIds[1]).param("fields", "friendCount"))
+                .andExpect(content().json("{\"friendCount\":1}", true));
+        mvc.perform(get("/users/" + userIds[2]).param("fields", "friendCount"))
+                .andExpect(content().json("{\"friendCount\":0}", true));
+    }
+}
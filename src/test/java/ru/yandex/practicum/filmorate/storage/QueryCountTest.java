@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Genre;
+import ru.yandex.practicum.filmorate.model.film.Rating;
+import ru.yandex.practicum.filmorate.model.user.User;
+import ru.yandex.practicum.filmorate.monitoring.QueryStats;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Число SQL-запросов на чтение не должно зависеть от того, сколько записей вернулось.
+ */
+@SpringBootTest
+@AutoConfigureTestDatabase
+public class QueryCountTest {
+    @Autowired
+    private FilmDbStorage filmStorage;
+
+    @Autowired
+    private UserDbStorage userStorage;
+
+    @Test
+    void findMutualsReturnsHydratedUsersInConstantQueries() {
+        long userId = addUser("mutual_user");
+        long otherId = addUser("mutual_other");
+        long singleId = addUser("mutual_single");
+        long strangerId = addUser("mutual_stranger");
+        List<Long> mutualIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            long mutualId = addUser("mutual" + i);
+            userStorage.addFriend(userId, mutualId);
+            userStorage.addFriend(otherId, mutualId);
+            userStorage.addFriend(mutualId, strangerId);
+            mutualIds.add(mutualId);
+        }
+        userStorage.addFriend(singleId, mutualIds.getFirst());
+        userStorage.addFriend(userId, strangerId);
+
+        List<User> mutuals = new ArrayList<>();
+        long queries = countQueries(() -> mutuals.addAll(userStorage.findMutuals(userId, otherId)));
+
+        Assertions.assertEquals(mutualIds, mutuals.stream().map(User::getId).toList());
+        for (User mutual : mutuals) {
+            Assertions.assertEquals(List.of(strangerId), List.copyOf(mutual.getFriends()));
+        }
+        Assertions.assertEquals(2, queries);
+        Assertions.assertEquals(queries, countQueries(() ->
+                Assertions.assertEquals(1, userStorage.findMutuals(userId, singleId).size())));
+    }
+
+    @Test
+    void findFriendsAndFindAllDoNotDependOnFriendCount() {
+        long userId = addUser("friends_user");
+        long friendId = addUser("friends_first");
+        userStorage.addFriend(userId, friendId);
+        userStorage.addFriend(friendId, userId);
+
+        long oneFriend = countQueries(() -> Assertions.assertEquals(1, userStorage.findFriends(userId).size()));
+        long allWithOneFriend = countQueries(() -> userStorage.findAll());
+        for (int i = 0; i < 10; i++) {
+            long otherId = addUser("friends" + i);
+            userStorage.addFriend(userId, otherId);
+            userStorage.addFriend(otherId, friendId);
+        }
+        List<User> friends = new ArrayList<>();
+        long manyFriends = countQueries(() -> friends.addAll(userStorage.findFriends(userId)));
+
+        Assertions.assertEquals(11, friends.size());
+        Assertions.assertEquals(List.of(userId), List.copyOf(friends.getFirst().getFriends()));
+        Assertions.assertEquals(2, oneFriend);
+        Assertions.assertEquals(oneFriend, manyFriends);
+        Assertions.assertEquals(2, allWithOneFriend);
+        Assertions.assertEquals(allWithOneFriend, countQueries(() -> userStorage.findAll()));
+    }
+
+    @Test
+    void filmReadsLoadRelationsInChunksOfThousand() {
+        List<Film> added = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            Film film = Film.builder()
+                    .name("chunk" + i)
+                    .description("description")
+                    .duration(100)
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .mpa(new Rating(1))
+                    .build();
+            film.getGenres().add(new Genre(1));
+            added.add(film);
+        }
+        Set<Long> ids = new HashSet<>(filmStorage.addAll(added));
+
+        List<Film> all = new ArrayList<>();
+        Assertions.assertEquals(3, countQueries(() -> all.addAll(filmStorage.findAll())));
+        int count = all.size();
+        List<Film> popular = new ArrayList<>();
+        long queries = countQueries(() -> popular.addAll(filmStorage.findPopular(count)));
+
+        // Фильмы, лайки и жанры каждой тысячи фильмов
+        Assertions.assertEquals(1 + 2 * ((count + 999) / 1000), queries);
+        Assertions.assertEquals(count, popular.size());
+        for (List<Film> films : List.of(all, popular)) {
+            Assertions.assertEquals(1500, films.stream()
+                    .filter(film -> ids.contains(film.getId()))
+                    .filter(film -> film.getGenres().size() == 1)
+                    .count());
+        }
+    }
+
+    private static long countQueries(Runnable read) {
+        QueryStats stats = QueryStats.start();
+        try {
+            read.run();
+            return stats.getQueries();
+        } finally {
+            QueryStats.stop();
+        }
+    }
+
+    private long addUser(String login) {
+        return userStorage.add(User.builder()
+                .name(login)
+                .login(login)
+                .email(login + "@yandex.ru")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build()).getId();
+    }
+}
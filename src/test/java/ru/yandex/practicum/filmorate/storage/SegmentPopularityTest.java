@@ -0,0 +1,106 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.model.FieldSet;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Genre;
+import ru.yandex.practicum.filmorate.model.film.Rating;
+import ru.yandex.practicum.filmorate.model.user.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+public class SegmentPopularityTest {
+    private static final long ACTION = 6;
+    private static final long DOCUMENTARY = 5;
+
+    @Autowired
+    private FilmDbStorage filmDbStorage;
+
+    @Autowired
+    private UserDbStorage userDbStorage;
+
+    @Test
+    void dbSegmentsFollowLikesAndUpdates() {
+        checkSegments(filmDbStorage, userDbStorage, "segment_db");
+    }
+
+    @Test
+    void inMemorySegmentsFollowLikesAndUpdates() {
+        InMemoryUserStorage userStorage = new InMemoryUserStorage();
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(
+                new UserService(userStorage, Validation.buildDefaultValidatorFactory().getValidator()));
+        checkSegments(filmStorage, userStorage, "segment_memory");
+    }
+
+    private void checkSegments(FilmStorage films, UserStorage users, String login) {
+        long[] userIds = new long[3];
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = users.add(User.builder()
+                    .name(login + i)
+                    .login(login + i)
+                    .email(login + i + "@yandex.ru")
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build()).getId();
+        }
+        long first = films.add(film(0, 1901, ACTION)).getId();
+        long second = films.add(film(0, 1901, ACTION, DOCUMENTARY)).getId();
+        long third = films.add(film(0, 1902, ACTION)).getId();
+        films.addLike(first, userIds[0]);
+        films.addLike(second, userIds[0]);
+        films.addLike(second, userIds[1]);
+        for (long userId : userIds) {
+            films.addLike(third, userId);
+        }
+
+        Assertions.assertEquals(List.of(second, first), popular(films, ACTION, 1901));
+        Assertions.assertEquals(List.of(second, first), popular(films, null, 1901));
+        Assertions.assertEquals(List.of(second), popular(films, DOCUMENTARY, 1901));
+        Assertions.assertEquals(List.of(third), popular(films, null, 1902));
+
+        films.deleteLike(second, userIds[0]);
+        films.deleteLike(second, userIds[1]);
+        Assertions.assertEquals(List.of(first, second), popular(films, ACTION, 1901));
+
+        films.update(film(third, 1901, ACTION));
+        Assertions.assertEquals(List.of(third, first, second), popular(films, ACTION, 1901));
+        Assertions.assertEquals(List.of(), popular(films, null, 1902));
+
+        films.update(film(first, 1901, DOCUMENTARY));
+        Assertions.assertEquals(List.of(third, second), popular(films, ACTION, 1901));
+        Assertions.assertEquals(List.of(first, second), popular(films, DOCUMENTARY, 1901));
+    }
+
+    private static List<Long> popular(FilmStorage films, Long genreId, Integer year) {
+        return films.findPopular(10, genreId, year, FieldSet.ALL).stream().map(Film::getId).toList();
+    }
+
+    private static Film film(long id, int year, long... genreIds) {
+        Film film = Film.builder()
+                .id(id)
+                .name("film" + year)
+                .description("description")
+                .duration(100)
+                .releaseDate(LocalDate.of(year, 1, 1))
+                .mpa(new Rating(1))
+                .build();
+        for (long genreId : genreIds) {
+            film.getGenres().add(new Genre(genreId));
+        }
+        return film;
+    }
+}
@@ -0,0 +1,125 @@
+package ru.yandex.practicum.filmorate.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Rating;
+import ru.yandex.practicum.filmorate.model.user.User;
+
+import java.time.LocalDate;
+import java.util.*;
+
+public class CompactLongSetTest {
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    void keepsValuesSortedAndDistinct() {
+        CompactLongSet set = new CompactLongSet(List.of(5L, 3L, 5L, 9L));
+        Assertions.assertTrue(set.add(1L));
+        Assertions.assertTrue(set.add(7L));
+        Assertions.assertTrue(set.add(10L));
+        Assertions.assertFalse(set.add(3L));
+
+        Assertions.assertArrayEquals(new long[]{1, 3, 5, 7, 9, 10}, set.toLongArray());
+        Assertions.assertTrue(set.contains(7L));
+        Assertions.assertFalse(set.contains(4L));
+        Assertions.assertFalse(set.contains("7"));
+    }
+
+    @Test
+    void removesValues() {
+        CompactLongSet set = new CompactLongSet(List.of(1L, 2L, 3L, 4L));
+        Assertions.assertTrue(set.remove(1L));
+        Assertions.assertFalse(set.remove(1L));
+        set.removeIf(value -> value % 2 == 0);
+
+        Assertions.assertArrayEquals(new long[]{3}, set.toLongArray());
+        set.clear();
+        Assertions.assertTrue(set.isEmpty());
+    }
+
+    @Test
+    void mergesAddAll() {
+        CompactLongSet set = new CompactLongSet(List.of(2L, 4L, 6L));
+        Assertions.assertTrue(set.addAll(List.of(6L, 1L, 5L, 1L)));
+        Assertions.assertFalse(set.addAll(List.of(2L, 4L)));
+
+        Assertions.assertArrayEquals(new long[]{1, 2, 4, 5, 6}, set.toLongArray());
+    }
+
+    @Test
+    void matchesTreeSetAcrossChunks() {
+        Random random = new Random(42);
+        CompactLongSet set = new CompactLongSet();
+        TreeSet<Long> expected = new TreeSet<>();
+        for (long id = 1; id <= 3 * CompactLongSet.CHUNK_SIZE; id++) {
+            Assertions.assertEquals(expected.add(id * 3), set.add(id * 3));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextInt(12 * CompactLongSet.CHUNK_SIZE);
+            switch (random.nextInt(3)) {
+                case 0 -> Assertions.assertEquals(expected.add(value), set.add(value));
+                case 1 -> Assertions.assertEquals(expected.remove(value), set.remove(value));
+                default -> Assertions.assertEquals(expected.contains(value), set.contains(value));
+            }
+        }
+        Assertions.assertEquals(expected.size(), set.size());
+        Assertions.assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), set.toLongArray());
+        Assertions.assertEquals(List.copyOf(expected), List.copyOf(set));
+
+        set.removeIf(value -> value % 2 == 0);
+        expected.removeIf(value -> value % 2 == 0);
+        Assertions.assertEquals(List.copyOf(expected), List.copyOf(set));
+    }
+
+    @Test
+    void iteratorSeesSnapshot() {
+        CompactLongSet set = new CompactLongSet(List.of(1L, 2L));
+        Iterator<Long> iterator = set.iterator();
+        set.add(3L);
+        set.remove(1L);
+
+        Assertions.assertEquals(List.of(1L, 2L), List.of(iterator.next(), iterator.next()));
+        Assertions.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    void equalsOtherSets() {
+        Set<Long> values = new HashSet<>(List.of(10L, 20L, 30L));
+        CompactLongSet set = new CompactLongSet(values);
+
+        Assertions.assertEquals(values, set);
+        Assertions.assertEquals(set, values);
+        Assertions.assertEquals(values.hashCode(), set.hashCode());
+    }
+
+    @Test
+    void serializesAsJsonArray() throws Exception {
+        Film film = Film.builder()
+                .id(1)
+                .name("film")
+                .description("description")
+                .duration(100)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .mpa(new Rating(1))
+                .build();
+        film.setLikes(new HashSet<>(List.of(3L, 1L, 2L)));
+        User user = User.builder()
+                .id(1)
+                .email("user@yandex.ru")
+                .login("user")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+        user.getFriends().add(5L);
+
+        JsonNode filmJson = mapper.readTree(mapper.writeValueAsString(film));
+        Assertions.assertEquals(mapper.readTree("[1,2,3]"), filmJson.get("likes"));
+        Assertions.assertEquals(mapper.readTree("[5]"), mapper.readTree(mapper.writeValueAsString(user)).get("friends"));
+
+        Film read = mapper.readValue(filmJson.toString(), Film.class);
+        Assertions.assertInstanceOf(CompactLongSet.class, read.getLikes());
+        Assertions.assertEquals(Set.of(1L, 2L, 3L), read.getLikes());
+    }
+}
@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class LongIntHashMapTest {
+    @Test
+    void addToRemovesZeroValues() {
+        LongIntHashMap map = new LongIntHashMap();
+        Assertions.assertEquals(2, map.addTo(5, 2));
+        Assertions.assertEquals(0, map.addTo(5, -2));
+
+        Assertions.assertFalse(map.containsKey(5));
+        Assertions.assertEquals(-1, map.get(5, -1));
+        Assertions.assertTrue(map.isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> map.put(0, 1));
+    }
+
+    @Test
+    void matchesHashMapUnderRandomOperations() {
+        Random random = new Random(42);
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            long key = 1 + random.nextInt(2_000);
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    int value = random.nextBoolean() ? 1 + random.nextInt(5) : -1 - random.nextInt(5);
+                    map.addTo(key, value);
+                    expected.merge(key, value, (a, b) -> a + b == 0 ? null : a + b);
+                }
+                case 1 -> Assertions.assertEquals(expected.remove(key) != null, map.remove(key));
+                default -> Assertions.assertEquals(expected.getOrDefault(key, 0), map.get(key));
+            }
+        }
+
+        Assertions.assertEquals(expected.size(), map.size());
+        Map<Long, Integer> actual = new HashMap<>();
+        map.forEach(actual::put);
+        Assertions.assertEquals(expected, actual);
+    }
+}